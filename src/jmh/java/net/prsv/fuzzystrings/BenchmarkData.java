@@ -0,0 +1,105 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic inputs shared by the benchmarks.
+ */
+public final class BenchmarkData {
+
+    private static final String ASCII_ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String NON_ASCII_ALPHABET = "абвгдеёжзийклмнопрстуфхцчшщыэюяАБВГДЕЖЗИЙКЛМНОПРСТУФХЦЧШЩЭЮЯ" +
+            "αβγδεζηθικλμνξοπρστυφχψωäöüßéèêàçñ";
+    private static final String PUNCTUATION = ",.-!?'/";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Approximate lengths of the generated strings.
+     */
+    public enum Length {
+        SHORT(12), MEDIUM(60), LONG(400);
+
+        final int chars;
+
+        Length(int chars) {
+            this.chars = chars;
+        }
+    }
+
+    /**
+     * Returns a random phrase of roughly {@code length} characters made of words of 2 to 10 characters,
+     * occasionally followed by punctuation.
+     */
+    static String phrase(Random random, int length, boolean ascii) {
+        String alphabet = ascii ? ASCII_ALPHABET : NON_ASCII_ALPHABET;
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            int wordLength = 2 + random.nextInt(9);
+            for (int i = 0; i < wordLength; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (random.nextInt(8) == 0) {
+                sb.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a copy of {@code s} with roughly {@code edits} random substitutions, insertions, deletions and
+     * case flips applied to it.
+     */
+    static String mutate(Random random, String s, int edits) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int i = 0; i < edits && sb.length() > 1; i++) {
+            int pos = random.nextInt(sb.length());
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.setCharAt(pos, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    sb.insert(pos, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 2:
+                    sb.deleteCharAt(pos);
+                    break;
+                default:
+                    char c = sb.charAt(pos);
+                    sb.setCharAt(pos, Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a corpus of {@code size} candidates. About one percent of the candidates are mutations of
+     * {@code query}, the rest are unrelated phrases of similar length.
+     */
+    static List<String> corpus(long seed, String query, int size, boolean ascii) {
+        Random random = new Random(seed);
+        List<String> candidates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(100) == 0) {
+                candidates.add(mutate(random, query, 1 + random.nextInt(4)));
+            } else {
+                int length = Math.max(4, query.length() - 8 + random.nextInt(17));
+                candidates.add(phrase(random, length, ascii));
+            }
+        }
+        return candidates;
+    }
+}
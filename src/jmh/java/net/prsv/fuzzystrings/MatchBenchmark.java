@@ -0,0 +1,115 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FuzzyStrings#matchOne(String, java.util.Collection, StringCompareFunction, boolean)} and
+ * {@link FuzzyStrings#matchAndSort(String, java.util.Collection, StringCompareFunction, boolean)} against
+ * synthetic candidate corpora.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int corpusSize;
+
+    @Param({"ratio", "complexRatio"})
+    public String scorer;
+
+    @Param({"MEDIUM"})
+    public BenchmarkData.Length length;
+
+    @Param({"true"})
+    public boolean ascii;
+
+    @Param({"true", "false"})
+    public boolean ignoreCase;
+
+    private StringCompareFunction compareFunction;
+    private PreparedCompareFunction preparedCompareFunction;
+    private String query;
+    private List<String> candidates;
+    private FuzzyIndex index;
+    private QGramIndex qGramIndex;
+
+    @Setup
+    public void setup() {
+        compareFunction = ScorerBenchmark.compareFunction(scorer);
+        query = BenchmarkData.phrase(new Random(7), length.chars, ascii);
+        candidates = BenchmarkData.corpus(11, query, corpusSize, ascii);
+        preparedCompareFunction = preparedCompareFunction(scorer);
+        index = FuzzyIndex.of(candidates);
+        qGramIndex = QGramIndex.of(candidates, ignoreCase);
+    }
+
+    @Benchmark
+    public StringMatch matchOne() {
+        return FuzzyStrings.matchOne(query, candidates, compareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public List<StringMatch> matchAndSort() {
+        return FuzzyStrings.matchAndSort(query, candidates, compareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public List<StringMatch> matchTopK() {
+        return FuzzyStrings.matchTopK(query, candidates, 10, compareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public StringMatch parallelMatchOne() {
+        return FuzzyStrings.parallelMatchOne(query, candidates, compareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public List<StringMatch> parallelMatchAndSort() {
+        return FuzzyStrings.parallelMatchAndSort(query, candidates, compareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public StringMatch indexMatchOne() {
+        return index.matchOne(query, preparedCompareFunction, ignoreCase);
+    }
+
+    @Benchmark
+    public List<StringMatch> indexMatchTopK() {
+        return index.matchTopK(query, 10, preparedCompareFunction, ignoreCase);
+    }
+
+    // always scores with ratio(), regardless of the scorer parameter
+    @Benchmark
+    public StringMatch qGramMatchOne() {
+        return qGramIndex.matchOne(query, 80);
+    }
+
+    static PreparedCompareFunction preparedCompareFunction(String name) {
+        switch (name) {
+            case "ratio":
+                return FuzzyStrings::ratio;
+            case "ratioToken":
+                return FuzzyStrings::ratioToken;
+            case "ratioTokenSet":
+                return FuzzyStrings::ratioTokenSet;
+            case "complexRatio":
+                return FuzzyStrings::complexRatio;
+            default:
+                throw new IllegalArgumentException("Unknown scorer: " + name);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the individual scorers on a single pair of strings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScorerBenchmark {
+
+    @Param({"ratio", "ratioToken", "ratioTokenSet", "partialRatio", "complexRatio"})
+    public String scorer;
+
+    @Param({"SHORT", "MEDIUM", "LONG"})
+    public BenchmarkData.Length length;
+
+    @Param({"true", "false"})
+    public boolean ascii;
+
+    @Param({"true", "false"})
+    public boolean ignoreCase;
+
+    private StringCompareFunction compareFunction;
+    private String s1;
+    private String s2;
+
+    @Setup
+    public void setup() {
+        compareFunction = compareFunction(scorer);
+        Random random = new Random(42);
+        s1 = BenchmarkData.phrase(random, length.chars, ascii);
+        s2 = BenchmarkData.mutate(random, s1, Math.max(1, length.chars / 10));
+    }
+
+    @Benchmark
+    public int score() {
+        return compareFunction.compare(s1, s2, ignoreCase);
+    }
+
+    static StringCompareFunction compareFunction(String name) {
+        switch (name) {
+            case "ratio":
+                return FuzzyStrings::ratio;
+            case "ratioToken":
+                return FuzzyStrings::ratioToken;
+            case "ratioTokenSet":
+                return FuzzyStrings::ratioTokenSet;
+            case "partialRatio":
+                return FuzzyStrings::partialRatio;
+            case "complexRatio":
+                return FuzzyStrings::complexRatio;
+            default:
+                throw new IllegalArgumentException("Unknown scorer: " + name);
+        }
+    }
+}
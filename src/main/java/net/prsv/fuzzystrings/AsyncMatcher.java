@@ -0,0 +1,163 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous versions of {@code matchAndSort()} with a time limit, for callers that cannot afford to wait for all
+ * candidates to be scored. Each call scores the candidates in chunks of {@value #CHUNK_SIZE} as a single task on an
+ * {@link Executor} supplied by the caller, so the number of threads busy matching is bounded by the executor. Before
+ * each chunk, the task checks whether the returned future has been cancelled, in which case it stops, and whether
+ * the time limit has been reached, in which case it completes the future with the matches found so far, flagged as
+ * partial (see {@link MatchResult#isPartial()}). The time limit counts from the call, so the time the task spends
+ * waiting in the queue of the executor counts as well. A comparison in progress is never interrupted, so the result
+ * can be late by the time it takes to score one chunk.
+ * <p>
+ * A complete result is the same as the one of the corresponding synchronous method. If scoring a candidate throws
+ * an exception, or the executor rejects the task, the future completes exceptionally.
+ */
+public final class AsyncMatcher {
+
+    /**
+     * The number of candidates scored between two checks of the time limit.
+     */
+    public static final int CHUNK_SIZE = 1024;
+
+    // do not instantiate
+    private AsyncMatcher() {
+    }
+
+    /**
+     * Scores a collection of candidates against a prepared query asynchronously, see
+     * {@link FuzzyStrings#matchAndSort(PreparedString, Collection, PreparedCompareFunction, int)}. The query is only
+     * normalized once, no matter how many candidates it is compared to. The collection must not be modified until the
+     * returned future is done.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param scoreCutoff the minimum score of interest
+     * @param timeout the time after which the matches found so far are returned
+     * @param executor the executor that scores the candidates
+     * @return a future of the matches sorted by their score; it completes exceptionally with an
+     *         {@link IllegalArgumentException} if any of the candidates is invalid
+     */
+    public static CompletableFuture<MatchResult> matchAndSort(PreparedString query, Collection<String> candidates,
+                                                              PreparedCompareFunction compareFunction,
+                                                              int scoreCutoff, Duration timeout, Executor executor) {
+        int pruningCutoff = FuzzyStrings.pruningCutoff(scoreCutoff);
+        Iterator<String> iterator = candidates.iterator();
+        return run(timeout, executor, matches -> {
+            for (int i = 0; i < CHUNK_SIZE && iterator.hasNext(); i++) {
+                String candidate = iterator.next();
+                FuzzyStrings.validate(candidate);
+                int ratio = compareFunction.compare(query, PreparedString.ofCandidate(candidate, query),
+                        pruningCutoff);
+                if (ratio >= scoreCutoff) {
+                    matches.add(new StringMatch(ratio, candidate));
+                }
+            }
+            return iterator.hasNext();
+        });
+    }
+
+    /**
+     * Scores the candidates in an index asynchronously, see
+     * {@link FuzzyIndex#matchAndSort(String, PreparedCompareFunction, boolean, int)}.
+     * @param s a string to match against the candidates
+     * @param index the index of the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @param timeout the time after which the matches found so far are returned
+     * @param executor the executor that scores the candidates
+     * @return a future of the matches sorted by their score
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public static CompletableFuture<MatchResult> matchAndSort(String s, FuzzyIndex index,
+                                                              PreparedCompareFunction compareFunction,
+                                                              boolean ignoreCase, int scoreCutoff, Duration timeout,
+                                                              Executor executor) {
+        PreparedString query = PreparedString.of(s, ignoreCase, index.dictionary());
+        PreparedString[] prepared = index.candidates(ignoreCase);
+        int pruningCutoff = FuzzyStrings.pruningCutoff(scoreCutoff);
+        int[] next = new int[1];
+        return run(timeout, executor, matches -> {
+            int end = Math.min(prepared.length, next[0] + CHUNK_SIZE);
+            for (int i = next[0]; i < end; i++) {
+                int ratio = compareFunction.compare(query, prepared[i], pruningCutoff);
+                if (ratio >= scoreCutoff) {
+                    matches.add(new StringMatch(ratio, prepared[i].getString()));
+                }
+            }
+            next[0] = end;
+            return end < prepared.length;
+        });
+    }
+
+    /**
+     * Scores the next chunk of candidates.
+     */
+    @FunctionalInterface
+    private interface Chunk {
+        /**
+         * Scores the next chunk of candidates, adding the matches to {@code matches}.
+         * @return {@code true} if there are candidates left
+         */
+        boolean score(List<StringMatch> matches);
+    }
+
+    private static CompletableFuture<MatchResult> run(Duration timeout, Executor executor, Chunk chunk) {
+        long start = System.nanoTime();
+        long timeoutNanos = toNanos(timeout);
+        CompletableFuture<MatchResult> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                List<StringMatch> matches = new ArrayList<>();
+                boolean more = true;
+                while (more) {
+                    if (future.isDone()) {
+                        // cancelled
+                        return;
+                    }
+                    if (System.nanoTime() - start >= timeoutNanos) {
+                        break;
+                    }
+                    more = chunk.score(matches);
+                }
+                matches.sort(Collections.reverseOrder());
+                future.complete(new MatchResult(matches, more));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // durations too long to be expressed in nanoseconds never run out
+    private static long toNanos(Duration timeout) {
+        try {
+            return timeout.toNanos();
+        } catch (ArithmeticException e) {
+            return timeout.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A <a href="https://en.wikipedia.org/wiki/BK-tree">BK-tree</a> of a collection of candidates, used to find the
+ * candidates within a given Levenshtein distance of a query, or the candidates nearest to it, without computing the
+ * distance to every candidate.
+ * <p>
+ * Every node of the tree holds a distinct candidate, and each child of a node is labeled with its distance to the
+ * node. By the triangle inequality, a candidate within distance {@code k} of the query can only be in the subtrees
+ * whose labels differ from the distance between the query and the node by at most {@code k}, so all other subtrees
+ * are skipped. Candidates that are equal (after conversion to lowercase, if differences in case are ignored) share
+ * a node.
+ * <p>
+ * The distances are the ones {@link FuzzyStrings#ratio(String, String, boolean) ratio()} is based on, i.e. the
+ * Levenshtein distances between the strings, converted to lowercase if differences in case are ignored. Instances
+ * are immutable and can be shared between threads.
+ */
+public final class BKTree {
+
+    private final String[] candidates;
+    private final boolean ignoreCase;
+    // the text of each node, the first candidate of the node, and the chain of candidates with the same text
+    private final String[] texts;
+    private final int[] firstCandidates;
+    private final int[] nextCandidates;
+    // the children of a node form a list linked by nextSiblings, each labeled with its distance to the parent
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] labels;
+
+    private BKTree(String[] candidates, boolean ignoreCase, String[] texts, int[] firstCandidates,
+                   int[] nextCandidates, int[] firstChildren, int[] nextSiblings, int[] labels) {
+        this.candidates = candidates;
+        this.ignoreCase = ignoreCase;
+        this.texts = texts;
+        this.firstCandidates = firstCandidates;
+        this.nextCandidates = nextCandidates;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.labels = labels;
+    }
+
+    /**
+     * Builds a tree of the specified candidates. The positions of the candidates in the collection are used to
+     * order candidates at the same distance from a query.
+     * @param candidates a collection of strings to be indexed
+     * @param ignoreCase if {@code true}, the tree will ignore differences in case between the candidates and the
+     *                   queries
+     * @return the tree
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static BKTree of(Collection<String> candidates, boolean ignoreCase) {
+        int n = candidates.size();
+        String[] strings = new String[n];
+        String[] texts = new String[n];
+        int[] firstCandidates = new int[n];
+        int[] nextCandidates = new int[n];
+        int[] firstChildren = new int[n];
+        int[] nextSiblings = new int[n];
+        int[] labels = new int[n];
+        Arrays.fill(nextCandidates, -1);
+        Arrays.fill(firstChildren, -1);
+        Arrays.fill(nextSiblings, -1);
+        // the last candidate of each node, so that the candidates of a node stay in the order of the collection
+        int[] lastCandidates = new int[n];
+        int nodes = 0;
+        int position = 0;
+        for (String candidate : candidates) {
+            FuzzyStrings.validate(candidate);
+            strings[position] = candidate;
+            String text = FuzzyStrings.prepare(candidate, ignoreCase, false);
+            int node = 0;
+            int parent = -1;
+            int distance = 0;
+            while (node >= 0 && nodes > 0) {
+                distance = LevenshteinPattern.distance(text, texts[node]);
+                if (distance == 0) {
+                    break;
+                }
+                parent = node;
+                node = firstChildren[node];
+                while (node >= 0 && labels[node] != distance) {
+                    node = nextSiblings[node];
+                }
+            }
+            if (nodes > 0 && node >= 0) {
+                // same text as an existing node
+                nextCandidates[lastCandidates[node]] = position;
+                lastCandidates[node] = position;
+            } else {
+                texts[nodes] = text;
+                firstCandidates[nodes] = position;
+                lastCandidates[nodes] = position;
+                if (parent >= 0) {
+                    labels[nodes] = distance;
+                    nextSiblings[nodes] = firstChildren[parent];
+                    firstChildren[parent] = nodes;
+                }
+                nodes++;
+            }
+            position++;
+        }
+        return new BKTree(strings, ignoreCase, Arrays.copyOf(texts, nodes), Arrays.copyOf(firstCandidates, nodes),
+                nextCandidates, Arrays.copyOf(firstChildren, nodes), Arrays.copyOf(nextSiblings, nodes),
+                Arrays.copyOf(labels, nodes));
+    }
+
+    /**
+     * Returns the number of candidates in the tree.
+     * @return the number of candidates in the tree
+     */
+    public int size() {
+        return candidates.length;
+    }
+
+    /**
+     * Returns the candidate at the specified position.
+     * @param index the position of the candidate
+     * @return the candidate at the specified position
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public String get(int index) {
+        return candidates[index];
+    }
+
+    /**
+     * Returns {@code true} if the tree ignores differences in case.
+     * @return {@code true} if the tree ignores differences in case
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns all candidates whose Levenshtein distance to the specified string is at most {@code maxDistance}.
+     * @param s a string to match against the candidates
+     * @param maxDistance the maximum distance
+     * @return the candidates within {@code maxDistance} of {@code s}, sorted by distance and then by position, and
+     *         the number of nodes visited
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters,
+     *                                  or {@code maxDistance} is negative
+     */
+    public Result withinDistance(String s, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative.");
+        }
+        LevenshteinPattern query = query(s);
+        // each match is packed into a long, the distance in the high half, so that sorting orders by distance first
+        long[] found = new long[16];
+        int count = 0;
+        int visited = 0;
+        if (texts.length > 0) {
+            int[] stack = new int[16];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int distance = query.distance(texts[node]);
+                visited++;
+                if (distance <= maxDistance) {
+                    for (int c = firstCandidates[node]; c >= 0; c = nextCandidates[c]) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, 2 * count);
+                        }
+                        found[count++] = ((long) distance << 32) | c;
+                    }
+                }
+                for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+                    if (Math.abs(labels[child] - distance) <= maxDistance) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * top);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<StringMatch> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            matches.add(new StringMatch((int) (found[i] >>> 32), candidates[(int) found[i]]));
+        }
+        return new Result(matches, visited);
+    }
+
+    /**
+     * Returns the {@code k} candidates nearest to the specified string, i.e. the ones with the smallest Levenshtein
+     * distance to it. Candidates at the same distance are ordered by their position. The search starts with the
+     * children closest to the query and skips every subtree that cannot contain a candidate closer than the
+     * {@code k}-th nearest candidate found so far.
+     * @param s a string to match against the candidates
+     * @param k the number of candidates to return
+     * @return at most {@code k} candidates nearest to {@code s}, sorted by distance and then by position, and the
+     *         number of nodes visited
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters,
+     *                                  or {@code k} is negative
+     */
+    public Result nearest(String s, int k) {
+        // ranked by descending score, so the score is the negated distance
+        TopK<Void> topK = new TopK<>(k);
+        LevenshteinPattern query = query(s);
+        int visited = 0;
+        if (texts.length > 0 && k > 0) {
+            // pending nodes and the lower bounds of their distances to the query
+            int[] stack = new int[16];
+            int[] bounds = new int[16];
+            int top = 0;
+            stack[top] = 0;
+            bounds[top++] = 0;
+            int[] children = new int[16];
+            while (top > 0) {
+                top--;
+                int node = stack[top];
+                if (bounds[top] > radius(topK)) {
+                    continue;
+                }
+                int distance = query.distance(texts[node]);
+                visited++;
+                for (int c = firstCandidates[node]; c >= 0; c = nextCandidates[c]) {
+                    topK.offer(-distance, c);
+                }
+                int count = 0;
+                for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+                    if (Math.abs(labels[child] - distance) <= radius(topK)) {
+                        if (count == children.length) {
+                            children = Arrays.copyOf(children, 2 * count);
+                        }
+                        children[count++] = child;
+                    }
+                }
+                // push the farthest children first, so that the closest ones are visited first
+                sortByBound(children, count, distance);
+                for (int i = count - 1; i >= 0; i--) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                        bounds = Arrays.copyOf(bounds, 2 * top);
+                    }
+                    stack[top] = children[i];
+                    bounds[top++] = Math.abs(labels[children[i]] - distance);
+                }
+            }
+        }
+        int[] positions = topK.drain();
+        List<StringMatch> matches = new ArrayList<>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            matches.add(new StringMatch(-topK.score(i), candidates[positions[i]]));
+        }
+        return new Result(matches, visited);
+    }
+
+    // returns the largest distance that can still get into topK
+    private static int radius(TopK<Void> topK) {
+        int threshold = topK.threshold();
+        // a candidate at the distance of the k-th nearest one can still get in if its position is smaller
+        return threshold == Integer.MIN_VALUE ? Integer.MAX_VALUE : 1 - threshold;
+    }
+
+    // sorts the first count children by the lower bound of their distance to the query (insertion sort; few children)
+    private void sortByBound(int[] children, int count, int distance) {
+        for (int i = 1; i < count; i++) {
+            int child = children[i];
+            int bound = Math.abs(labels[child] - distance);
+            int j = i - 1;
+            while (j >= 0 && Math.abs(labels[children[j]] - distance) > bound) {
+                children[j + 1] = children[j];
+                j--;
+            }
+            children[j + 1] = child;
+        }
+    }
+
+    private LevenshteinPattern query(String s) {
+        FuzzyStrings.validate(s);
+        return new LevenshteinPattern(FuzzyStrings.prepare(s, ignoreCase, false));
+    }
+
+    /**
+     * The result of a query: the matching candidates, whose scores are their Levenshtein distances to the query,
+     * and the number of tree nodes whose distance to the query has been computed.
+     */
+    public static final class Result {
+        private final List<StringMatch> matches;
+        private final int visitedNodes;
+
+        Result(List<StringMatch> matches, int visitedNodes) {
+            this.matches = Collections.unmodifiableList(matches);
+            this.visitedNodes = visitedNodes;
+        }
+
+        /**
+         * Returns the matching candidates. The score of each match is its Levenshtein distance to the query.
+         * @return an unmodifiable list of the matching candidates, sorted by distance
+         */
+        public List<StringMatch> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Returns the number of tree nodes whose distance to the query has been computed.
+         * @return the number of nodes visited
+         */
+        public int getVisitedNodes() {
+            return visitedNodes;
+        }
+    }
+}
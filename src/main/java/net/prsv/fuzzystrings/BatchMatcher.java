@@ -0,0 +1,284 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Matches files of queries against a {@link FuzzyIndex}, e.g. for offline reconciliation jobs. The queries are read
+ * from a memory-mapped file in chunks, each chunk is matched in parallel, and the results are passed to a consumer
+ * in the order of the queries as soon as their chunk is done. While one chunk is being matched, the next one is
+ * read, so at most two chunks of queries and results are held in memory at any time, no matter how large the file
+ * is.
+ * <p>
+ * The class can also be run from the command line:
+ * <pre>
+ * java -cp FuzzyStrings.jar net.prsv.fuzzystrings.BatchMatcher [options] candidates.txt queries.txt
+ * </pre>
+ * which writes one tab-separated line per match to the standard output: the query, the matched candidate and its
+ * score. Queries without a match get one line with the last two fields empty. Backslashes, tabs and carriage
+ * returns in the query and the candidate are written as {@code \\}, {@code \t} and {@code \r}, so that every
+ * line has exactly three fields. The options are {@code -k <n>} (the number of matches per query, {@code 1} by
+ * default), {@code -cutoff <score>}, {@code -scorer <name>} (one of {@code ratio}, {@code token}, {@code tokenset},
+ * {@code partial}, for short queries found within longer candidates, and {@code complex}, the default) and
+ * {@code -ignorecase}.
+ */
+public final class BatchMatcher {
+
+    /**
+     * The number of queries matched together.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private final FuzzyIndex index;
+    private final PreparedCompareFunction compareFunction;
+    private final boolean ignoreCase;
+    private final int k;
+    private final int scoreCutoff;
+
+    /**
+     * Creates a matcher that finds the {@code k} best matches of each query whose score is at least
+     * {@code scoreCutoff}.
+     * @param index the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the matcher will ignore differences in case between the strings
+     * @param k the maximum number of matches per query
+     * @param scoreCutoff the minimum score of interest
+     * @throws IllegalArgumentException if {@code k} is less than {@code 1}
+     */
+    public BatchMatcher(FuzzyIndex index, PreparedCompareFunction compareFunction, boolean ignoreCase, int k,
+                        int scoreCutoff) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive.");
+        }
+        this.index = index;
+        this.compareFunction = compareFunction;
+        this.ignoreCase = ignoreCase;
+        this.k = k;
+        this.scoreCutoff = scoreCutoff;
+    }
+
+    /**
+     * A consumer of the results of a batch.
+     */
+    @FunctionalInterface
+    public interface ResultConsumer {
+        /**
+         * Accepts the matches of a query. The calls come from the thread running the batch, in the order of the
+         * queries.
+         * @param line the number of the line holding the query, starting from {@code 1}
+         * @param query the query
+         * @param matches the matches of the query, best first; empty if there are none or the query is invalid
+         * @throws IOException if the results cannot be written
+         */
+        void accept(long line, String query, List<StringMatch> matches) throws IOException;
+    }
+
+    /**
+     * Reads the valid lines of a UTF-8 text file, e.g. to build the index. Lines that are empty or only contain
+     * whitespace characters are skipped.
+     * @param file the file
+     * @return the valid lines of the file
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<String> readLines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (MappedLines reader = new MappedLines(file)) {
+            for (String line = reader.next(); line != null; line = reader.next()) {
+                if (!FuzzyStrings.isInvalid(line)) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the matches of a single query.
+     * @param query the query
+     * @return the matches of the query, best first; empty if there are none or the query is invalid
+     */
+    public List<StringMatch> match(String query) {
+        if (FuzzyStrings.isInvalid(query)) {
+            return Collections.emptyList();
+        }
+        if (k == 1) {
+            StringMatch match = index.matchOne(query, compareFunction, ignoreCase, scoreCutoff);
+            // no candidate reaches the cutoff
+            return match.getText().isEmpty() ? Collections.emptyList() : Collections.singletonList(match);
+        }
+        return index.matchTopK(query, k, compareFunction, ignoreCase, scoreCutoff);
+    }
+
+    /**
+     * Equivalent to calling {@code match(queries, consumer, ForkJoinPool.commonPool())}.
+     * @param queries a UTF-8 text file with one query per line
+     * @param consumer the consumer of the results
+     * @return the number of queries
+     * @throws IOException if an I/O error occurs
+     */
+    public long match(Path queries, ResultConsumer consumer) throws IOException {
+        return match(queries, consumer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Matches every line of a file and passes the matches to the consumer, in the order of the lines.
+     * @param queries a UTF-8 text file with one query per line
+     * @param consumer the consumer of the results
+     * @param pool the pool that matches the queries
+     * @return the number of queries
+     * @throws IOException if an I/O error occurs
+     */
+    public long match(Path queries, ResultConsumer consumer, ForkJoinPool pool) throws IOException {
+        long line = 0;
+        try (MappedLines reader = new MappedLines(queries)) {
+            String[] pendingQueries = null;
+            ForkJoinTask<List<List<StringMatch>>> pending = null;
+            while (true) {
+                String[] chunk = readChunk(reader);
+                ForkJoinTask<List<List<StringMatch>>> task =
+                        chunk.length == 0 ? null : pool.submit(() -> match(chunk, pool));
+                if (pending != null) {
+                    List<List<StringMatch>> results = pending.join();
+                    for (int i = 0; i < pendingQueries.length; i++) {
+                        consumer.accept(++line, pendingQueries[i], results.get(i));
+                    }
+                }
+                if (task == null) {
+                    break;
+                }
+                pendingQueries = chunk;
+                pending = task;
+            }
+        }
+        return line;
+    }
+
+    private static String[] readChunk(MappedLines reader) throws IOException {
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (String line; chunk.size() < CHUNK_SIZE && (line = reader.next()) != null; ) {
+            chunk.add(line);
+        }
+        return chunk.toArray(new String[0]);
+    }
+
+    private List<List<StringMatch>> match(String[] queries, ForkJoinPool pool) {
+        // the size is fixed, so the results can be set from several threads at once
+        List<List<StringMatch>> results = new ArrayList<>(Collections.nCopies(queries.length, null));
+        // matching a query against the whole index is expensive, so the chunk can be split down to single queries
+        ParallelMatch.forEach(queries.length, i -> results.set(i, match(queries[i])), pool, 1);
+        return results;
+    }
+
+    /**
+     * Matches a file of queries against a file of candidates, see the description of the class.
+     * @param args the command line arguments
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        int k = 1;
+        int scoreCutoff = Integer.MIN_VALUE;
+        boolean ignoreCase = false;
+        PreparedCompareFunction compareFunction = FuzzyStrings::complexRatio;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-k":
+                        k = Integer.parseInt(args[++i]);
+                        break;
+                    case "-cutoff":
+                        scoreCutoff = Integer.parseInt(args[++i]);
+                        break;
+                    case "-ignorecase":
+                        ignoreCase = true;
+                        break;
+                    case "-scorer":
+                        compareFunction = scorer(args[++i]);
+                        break;
+                    default:
+                        files.add(args[i]);
+                }
+            }
+            if (files.size() != 2 || k < 1) {
+                throw new IllegalArgumentException();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: BatchMatcher [-k <n>] [-cutoff <score>] "
+                    + "[-scorer ratio|token|tokenset|partial|complex] [-ignorecase] <candidates> <queries>");
+            System.exit(2);
+            return;
+        }
+        FuzzyIndex index = FuzzyIndex.of(readLines(Paths.get(files.get(0))));
+        BatchMatcher matcher = new BatchMatcher(index, compareFunction, ignoreCase, k, scoreCutoff);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            matcher.match(Paths.get(files.get(1)), (line, query, matches) -> {
+                String field = escape(query);
+                if (matches.isEmpty()) {
+                    out.write(field + "\t\t\n");
+                }
+                for (StringMatch match : matches) {
+                    out.write(field + "\t" + escape(match.getText()) + "\t" + match.getScore() + "\n");
+                }
+            });
+        }
+    }
+
+    /**
+     * Escapes a field of the tab-separated output: backslashes, tabs and carriage returns are replaced with
+     * {@code \\}, {@code \t} and {@code \r}.
+     * @param field the field
+     * @return the escaped field
+     */
+    static String escape(String field) {
+        StringBuilder sb = null;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            String escaped = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\r' ? "\\r" : null;
+            if (escaped == null) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(field.length() + 8).append(field, 0, i);
+            }
+            sb.append(escaped);
+        }
+        return sb == null ? field : sb.toString();
+    }
+
+    private static PreparedCompareFunction scorer(String name) {
+        switch (name) {
+            case "ratio":
+                return FuzzyStrings::ratio;
+            case "token":
+                return FuzzyStrings::ratioToken;
+            case "tokenset":
+                return FuzzyStrings::ratioTokenSet;
+            case "partial":
+                return FuzzyStrings::partialRatio;
+            case "complex":
+                return FuzzyStrings::complexRatio;
+            default:
+                throw new IllegalArgumentException("Unknown scorer: " + name);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.Collection;
+
+/**
+ * Similar to {@link StringCompareFunction}, but the compare function also receives the minimum score the caller is
+ * interested in, which allows it to give up on a pair of strings as soon as it is clear that they cannot reach that
+ * score. A compare function is expected to return {@code 0} for such pairs.
+ * <p>
+ * This is a functional interface and can therefore be used as the assignment target for a lambda expression or
+ * method reference. {@link FuzzyStrings} provides five methods compatible with this functional interface that can
+ * be provided to {@link FuzzyStrings#matchOne(String, Collection, BoundedStringCompareFunction, boolean, int)} and
+ * {@link FuzzyStrings#matchAndSort(String, Collection, BoundedStringCompareFunction, boolean, int)}:
+ * {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken}, {@code FuzzyStrings::ratioTokenSet},
+ * {@code FuzzyStrings::partialRatio} and {@code FuzzyStrings::complexRatio}.
+ */
+@FunctionalInterface
+public interface BoundedStringCompareFunction {
+    int compare(String s1, String s2, boolean ignoreCase, int scoreCutoff);
+}
@@ -0,0 +1,376 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A compact store of a large collection of candidates for {@link FuzzyStrings#ratio(String, String, boolean, int)
+ * ratio()} matching. The normalized text of all candidates (converted to lowercase if differences in case are
+ * ignored) is packed back-to-back into a single character buffer, on the heap or outside of it, and each candidate is
+ * a range of that buffer given by an array of offsets, so the store costs two bytes per character and four bytes per
+ * candidate instead of a {@code String} object per candidate. The Levenshtein distance kernels run directly on the
+ * ranges of the buffer, and the results refer to the candidates by position, see {@link IndexedMatches}.
+ * <p>
+ * The scores are the same as the ones of {@code ratio()}. The original candidates are not kept, only their
+ * normalized text. A heap buffer holds up to {@code Integer.MAX_VALUE - 8} characters in total, and a direct buffer
+ * up to {@code Integer.MAX_VALUE / 2}. Instances are immutable and can be shared between threads.
+ */
+public final class CandidateArena {
+
+    private static final long MAX_HEAP_CHARS = Integer.MAX_VALUE - 8;
+    private static final long MAX_DIRECT_CHARS = Integer.MAX_VALUE / 2;
+    // the number of candidates whose distances are computed by one call to the kernels
+    private static final int BATCH_SIZE = 64;
+
+    private final CharBuffer buffer;
+    // candidate i occupies buffer[offsets[i], offsets[i + 1])
+    private final int[] offsets;
+    // the lengths of the original candidates, only if converting to lowercase has changed the length of any of them
+    private final int[] originalLengths;
+    private final boolean ignoreCase;
+
+    private CandidateArena(CharBuffer buffer, int[] offsets, int[] originalLengths, boolean ignoreCase) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.originalLengths = originalLengths;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Packs the specified candidates into a store on the heap.
+     * @param candidates a collection of strings to be stored
+     * @param ignoreCase if {@code true}, the store will ignore differences in case between the candidates and the
+     *                   queries
+     * @return the store
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters, or the candidates are too long to fit into a single buffer
+     */
+    public static CandidateArena of(Collection<String> candidates, boolean ignoreCase) {
+        return of(candidates, ignoreCase, false);
+    }
+
+    /**
+     * Packs the specified candidates into a store, outside of the heap if {@code direct} is {@code true}. The
+     * candidates are normalized twice, once to measure them and once to copy them into a buffer of the exact size.
+     * @param candidates a collection of strings to be stored
+     * @param ignoreCase if {@code true}, the store will ignore differences in case between the candidates and the
+     *                   queries
+     * @param direct if {@code true}, the text of the candidates will be stored in a direct buffer
+     * @return the store
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters, or the candidates are too long to fit into a single buffer
+     */
+    public static CandidateArena of(Collection<String> candidates, boolean ignoreCase, boolean direct) {
+        int n = candidates.size();
+        int[] offsets = new int[n + 1];
+        int[] originalLengths = null;
+        long total = 0;
+        int i = 0;
+        for (String candidate : candidates) {
+            FuzzyStrings.validate(candidate);
+            int length = FuzzyStrings.prepare(candidate, ignoreCase, false).length();
+            if (length != candidate.length() && originalLengths == null) {
+                originalLengths = new int[n];
+            }
+            if (originalLengths != null) {
+                originalLengths[i] = candidate.length();
+            }
+            total += length;
+            if (total > (direct ? MAX_DIRECT_CHARS : MAX_HEAP_CHARS)) {
+                throw new IllegalArgumentException("The candidates are too long to be stored in a single buffer.");
+            }
+            offsets[++i] = (int) total;
+        }
+        if (originalLengths != null) {
+            // the lengths of the candidates before the first one whose length has changed
+            for (int j = 0; j < n && originalLengths[j] == 0; j++) {
+                originalLengths[j] = offsets[j + 1] - offsets[j];
+            }
+        }
+        CharBuffer buffer = direct
+                ? ByteBuffer.allocateDirect((int) total * 2).order(ByteOrder.nativeOrder()).asCharBuffer()
+                : CharBuffer.allocate((int) total);
+        for (String candidate : candidates) {
+            buffer.put(FuzzyStrings.prepare(candidate, ignoreCase, false));
+        }
+        buffer.flip();
+        return new CandidateArena(buffer, offsets, originalLengths, ignoreCase);
+    }
+
+    /**
+     * Returns the number of candidates in the store.
+     * @return the number of candidates
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the normalized text of the candidate at the specified position, i.e. the candidate converted to
+     * lowercase if differences in case are ignored.
+     * @param index the position of the candidate
+     * @return the normalized text of the candidate
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public String getText(int index) {
+        return buffer.subSequence(offsets[index], offsets[index + 1]).toString();
+    }
+
+    /**
+     * Returns {@code true} if the store ignores differences in case.
+     * @return {@code true} if the store ignores differences in case
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns {@code true} if the text of the candidates is stored outside of the heap.
+     * @return {@code true} if the store uses a direct buffer
+     */
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    /**
+     * Returns the best match for the specified string, ignoring candidates whose score is less than
+     * {@code scoreCutoff}. Like {@link FuzzyStrings#matchOne(String, Collection, BoundedStringCompareFunction,
+     * boolean, int)}, the last of several candidates with the best score is returned, and the score of the best
+     * match found so far becomes the cutoff for the remaining candidates.
+     * @param s a string to match against the candidates
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match, or no match if no candidate reaches {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public IndexedMatches matchOne(String s, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("CandidateArena.matchOne");
+        try {
+            Query query = query(s, stats);
+            Batch batch = stats == null ? new Batch(query) : null;
+            int bestRatio = -1;
+            int bestIndex = -1;
+            int currentCutoff = scoreCutoff;
+            for (int i = 0; i < size(); i++) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int currentRatio = batch != null ? batch.ratio(i, FuzzyStrings.pruningCutoff(currentCutoff))
+                        : ratio(query, i, FuzzyStrings.pruningCutoff(currentCutoff));
+                if (stats != null) {
+                    stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                }
+                if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                    bestIndex = i;
+                    bestRatio = currentRatio;
+                    currentCutoff = Math.max(currentCutoff, currentRatio);
+                }
+            }
+            return bestIndex < 0 ? new IndexedMatches(new int[0], new int[0], 0)
+                    : new IndexedMatches(new int[] {bestIndex}, new int[] {bestRatio}, 1);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores all candidates and returns the matches whose score is at least {@code scoreCutoff}, sorted by score (in
+     * descending order) and then by position, like
+     * {@link FuzzyStrings#matchAndSort(String, Collection, BoundedStringCompareFunction, boolean, int)}.
+     * @param s a string to match against the candidates
+     * @param scoreCutoff the minimum score of interest
+     * @return the matches sorted by their score
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public IndexedMatches matchAndSort(String s, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("CandidateArena.matchAndSort");
+        try {
+            Query query = query(s, stats);
+            Batch batch = stats == null ? new Batch(query) : null;
+            // each match is packed into a long, the negated score in the high half, so that sorting orders by
+            // descending score first and by ascending position second
+            long[] found = new long[16];
+            int count = 0;
+            for (int i = 0; i < size(); i++) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = batch != null ? batch.ratio(i, FuzzyStrings.pruningCutoff(scoreCutoff))
+                        : ratio(query, i, FuzzyStrings.pruningCutoff(scoreCutoff));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= scoreCutoff);
+                }
+                if (ratio >= scoreCutoff) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, 2 * count);
+                    }
+                    found[count++] = ((long) -ratio << 32) | i;
+                }
+            }
+            Arrays.sort(found, 0, count);
+            int[] indices = new int[count];
+            int[] scores = new int[count];
+            for (int i = 0; i < count; i++) {
+                indices[i] = (int) found[i];
+                scores[i] = (int) -(found[i] >> 32);
+            }
+            return new IndexedMatches(indices, scores, count);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the {@code k} best matches whose score is at least {@code scoreCutoff}, sorted by score (in
+     * descending order) and then by position, i.e. the first {@code k} matches returned by
+     * {@link #matchAndSort(String, int)}.
+     * @param s a string to match against the candidates
+     * @param k the maximum number of matches to return
+     * @param scoreCutoff the minimum score of interest
+     * @return at most {@code k} matches sorted by their score
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters,
+     *                                  or {@code k} is negative
+     */
+    public IndexedMatches matchTopK(String s, int k, int scoreCutoff) {
+        TopK<Void> topK = new TopK<>(k);
+        MatchStats stats = MatchStats.start("CandidateArena.matchTopK");
+        try {
+            Query query = query(s, stats);
+            Batch batch = stats == null ? new Batch(query) : null;
+            for (int i = 0; i < size(); i++) {
+                int threshold = Math.max(topK.threshold(), scoreCutoff);
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = batch != null ? batch.ratio(i, FuzzyStrings.pruningCutoff(threshold))
+                        : ratio(query, i, FuzzyStrings.pruningCutoff(threshold));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= threshold);
+                }
+                if (ratio >= threshold) {
+                    topK.offer(ratio, i);
+                }
+            }
+            int[] indices = topK.drain();
+            int[] scores = new int[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                scores[i] = topK.score(i);
+            }
+            return new IndexedMatches(indices, scores, indices.length);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Same as {@link FuzzyStrings#ratio(PreparedString, PreparedString, int)}, with the candidate read from the
+     * buffer. Candidates whose original strings are equal to the query have equal texts as well, so the shortcut
+     * for equal strings of {@code ratio()} yields the same score as the distance of {@code 0}.
+     */
+    private int ratio(Query query, int index, int scoreCutoff) {
+        int from = offsets[index];
+        int to = offsets[index + 1];
+        int lengthSum = query.length + (originalLengths == null ? to - from : originalLengths[index]);
+        int maxDistance = FuzzyStrings.maxDistance(lengthSum, scoreCutoff);
+        if (maxDistance < 0) {
+            return 0;
+        }
+        if (Math.abs(query.pattern.length() - (to - from)) > maxDistance) {
+            MatchStats.reject(PruneReason.LENGTH);
+            return 0;
+        }
+        int distance = query.pattern.distance(buffer, from, to, maxDistance);
+        if (distance > maxDistance) {
+            return 0;
+        }
+        int score = FuzzyStrings.similarity(lengthSum, distance);
+        return score >= scoreCutoff ? score : 0;
+    }
+
+    /**
+     * Scores the candidates in batches of {@link #BATCH_SIZE}: the distances of all candidates of a batch that pass
+     * the length filter are computed by one call to {@link Kernels#distances}, which may compute them in parallel
+     * lanes of a vector. All candidates of a batch are scored with the cutoff in effect for the first one. The
+     * cutoff of the methods above only ever grows, so a candidate scored with a lower cutoff gets either its
+     * exact score or {@code 0}, and the methods accept the same candidates as with {@link #ratio(Query, int, int)}.
+     * Not used while collecting statistics, which are recorded per candidate.
+     */
+    private final class Batch {
+        private final Query query;
+        private final int[] scores = new int[BATCH_SIZE];
+        private final int[] positions = new int[BATCH_SIZE];
+        private final int[] from = new int[BATCH_SIZE];
+        private final int[] to = new int[BATCH_SIZE];
+        private final int[] lengthSums = new int[BATCH_SIZE];
+        private final int[] maxDistances = new int[BATCH_SIZE];
+        private final int[] distances = new int[BATCH_SIZE];
+        private int first = -1;
+
+        Batch(Query query) {
+            this.query = query;
+        }
+
+        int ratio(int index, int scoreCutoff) {
+            if (first < 0 || index < first || index >= first + BATCH_SIZE) {
+                score(index, scoreCutoff);
+            }
+            return scores[index - first];
+        }
+
+        private void score(int start, int scoreCutoff) {
+            first = start;
+            int count = Math.min(BATCH_SIZE, size() - start);
+            int n = 0;
+            for (int k = 0; k < count; k++) {
+                int index = start + k;
+                int candidateFrom = offsets[index];
+                int candidateTo = offsets[index + 1];
+                int lengthSum = query.length
+                        + (originalLengths == null ? candidateTo - candidateFrom : originalLengths[index]);
+                int maxDistance = FuzzyStrings.maxDistance(lengthSum, scoreCutoff);
+                scores[k] = 0;
+                if (maxDistance < 0 || Math.abs(query.pattern.length() - (candidateTo - candidateFrom)) > maxDistance) {
+                    continue;
+                }
+                positions[n] = k;
+                from[n] = candidateFrom;
+                to[n] = candidateTo;
+                lengthSums[n] = lengthSum;
+                maxDistances[n] = maxDistance;
+                n++;
+            }
+            Kernels.INSTANCE.distances(query.pattern, buffer, from, to, maxDistances, n, distances);
+            for (int j = 0; j < n; j++) {
+                if (distances[j] <= maxDistances[j]) {
+                    int score = FuzzyStrings.similarity(lengthSums[j], distances[j]);
+                    scores[positions[j]] = score >= scoreCutoff ? score : 0;
+                }
+            }
+        }
+    }
+
+    private Query query(String s, MatchStats stats) {
+        long time = stats == null ? 0 : System.nanoTime();
+        FuzzyStrings.validate(s);
+        Query query = new Query(s.length(), new LevenshteinPattern(FuzzyStrings.prepare(s, ignoreCase, false)));
+        if (stats != null) {
+            stats.normalized(time);
+        }
+        return query;
+    }
+
+    /**
+     * A normalized query: the length of the original string and the pattern of its normalized text.
+     */
+    private static final class Query {
+        final int length;
+        final LevenshteinPattern pattern;
+
+        Query(int length, LevenshteinPattern pattern) {
+            this.length = length;
+            this.pattern = pattern;
+        }
+    }
+}
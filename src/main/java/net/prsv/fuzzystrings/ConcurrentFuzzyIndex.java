@@ -0,0 +1,614 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A collection of candidates that can be modified while it is being matched against, for catalogues that change too
+ * often to rebuild a {@link FuzzyIndex} on every change.
+ * <p>
+ * The candidates are kept in immutable segments, each prepared like a {@code FuzzyIndex} with a token dictionary of
+ * its own, plus a small buffer of the most recently added candidates. Every change publishes a new list of segments
+ * (copy-on-write) with a single volatile write: added candidates go to a new copy of the buffer, which becomes a
+ * segment once it is full, and removed candidates are marked in a new copy of the bitmap of their segment, sharing
+ * the prepared candidates. A query reads the list once, so it sees every change published before it started and
+ * none published after. Readers never wait for anything; writers wait for each other only.
+ * <p>
+ * To keep the number of segments logarithmic in the number of candidates, adjacent segments of similar sizes are
+ * merged into one in the background, on the {@link Executor} given to the constructor, and segments whose candidates
+ * have mostly been removed are compacted. A merge prepares its segment without holding any lock and only publishes it
+ * when it is done, re-applying the removals that happened in the meantime.
+ * <p>
+ * The candidates are ordered by the time they have been added. The match methods return the same results as the
+ * corresponding methods of {@link FuzzyStrings} called with the list of the current candidates in that order.
+ * Instances are thread-safe.
+ */
+public final class ConcurrentFuzzyIndex {
+
+    /**
+     * The default number of recently added candidates that are kept in the buffer before they become a segment.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    // a segment is merged with the newer one next to it if it has at most this many times as many candidates
+    private static final int MERGE_FACTOR = 2;
+
+    private final int bufferSize;
+    private final Executor mergeExecutor;
+    private final Object writeLock = new Object();
+    private final AtomicBoolean merging = new AtomicBoolean();
+    private volatile State state = new State(new Segment[0], Segment.EMPTY, 0);
+
+    /**
+     * Creates an empty index with the default buffer size, which merges its segments in the common
+     * {@link ForkJoinPool}.
+     */
+    public ConcurrentFuzzyIndex() {
+        this(DEFAULT_BUFFER_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an empty index.
+     * @param bufferSize the number of recently added candidates that are kept in the buffer before they become a
+     *                   segment. Queries compare the candidates in the buffer a little more slowly than the ones in
+     *                   segments, and every addition copies the buffer.
+     * @param mergeExecutor the executor that merges the segments. If it rejects a merge, the merge is attempted
+     *                      again after the next change.
+     * @throws IllegalArgumentException if {@code bufferSize} is less than {@code 1}
+     */
+    public ConcurrentFuzzyIndex(int bufferSize, Executor mergeExecutor) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive.");
+        }
+        this.bufferSize = bufferSize;
+        this.mergeExecutor = mergeExecutor;
+    }
+
+    /**
+     * Adds a candidate to the index.
+     * @param candidate a string to be added
+     * @throws IllegalArgumentException if {@code candidate} is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public void add(String candidate) {
+        FuzzyStrings.validate(candidate);
+        PreparedString prepared = PreparedString.ofCandidate(candidate, false);
+        PreparedString preparedIgnoreCase = prepared.asIgnoreCase();
+        if (preparedIgnoreCase == null) {
+            preparedIgnoreCase = PreparedString.ofCandidate(candidate, true);
+        }
+        boolean merge;
+        synchronized (writeLock) {
+            State current = state;
+            Segment[] segments = current.segments;
+            Segment buffer = current.buffer.append(candidate, prepared, preparedIgnoreCase);
+            if (buffer.length() >= bufferSize) {
+                // the buffer has at least one candidate left, the one just added
+                segments = append(segments, Segment.of(buffer.candidates()));
+                buffer = Segment.EMPTY;
+            }
+            state = new State(segments, buffer, current.size + 1);
+            merge = mergePlan(segments) != null;
+        }
+        if (merge) {
+            scheduleMerge();
+        }
+    }
+
+    /**
+     * Adds the specified candidates to the index at once: a query either sees all of them or none. The candidates
+     * are prepared before any lock is taken, so adding a large collection does not hold up the other writers.
+     * @param candidates a collection of strings to be added
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public void addAll(Collection<String> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Segment added = Segment.of(new ArrayList<>(candidates));
+        boolean merge;
+        synchronized (writeLock) {
+            State current = state;
+            Segment[] segments = current.segments;
+            if (current.buffer.liveCount > 0) {
+                segments = append(segments, Segment.of(current.buffer.candidates()));
+            }
+            segments = append(segments, added);
+            state = new State(segments, Segment.EMPTY, current.size + added.liveCount);
+            merge = mergePlan(segments) != null;
+        }
+        if (merge) {
+            scheduleMerge();
+        }
+    }
+
+    /**
+     * Removes all candidates equal to the specified string from the index.
+     * @param candidate a string to be removed
+     * @return {@code true} if the index contained the string
+     */
+    public boolean remove(String candidate) {
+        if (candidate == null) {
+            return false;
+        }
+        int hash = candidate.hashCode();
+        boolean merge;
+        synchronized (writeLock) {
+            State current = state;
+            Segment[] segments = current.segments;
+            int removed = 0;
+            for (int i = 0; i < segments.length; i++) {
+                Segment segment = segments[i].remove(candidate, hash);
+                if (segment != segments[i]) {
+                    if (segments == current.segments) {
+                        segments = segments.clone();
+                    }
+                    removed += segments[i].liveCount - segment.liveCount;
+                    segments[i] = segment;
+                }
+            }
+            Segment buffer = current.buffer.remove(candidate, hash);
+            removed += current.buffer.liveCount - buffer.liveCount;
+            if (removed == 0) {
+                return false;
+            }
+            state = new State(segments, buffer, current.size - removed);
+            merge = mergePlan(segments) != null;
+        }
+        if (merge) {
+            scheduleMerge();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of candidates in the index.
+     * @return the number of candidates in the index
+     */
+    public int size() {
+        return state.size;
+    }
+
+    /**
+     * Returns the candidates in the index, in the order they have been added.
+     * @return a list of the candidates
+     */
+    public List<String> getCandidates() {
+        State current = state;
+        List<String> result = new ArrayList<>(current.size);
+        for (Segment segment : current.all) {
+            result.addAll(segment.candidates());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of segments the candidates are kept in, not counting the buffer of recently added
+     * candidates.
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return state.segments.length;
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in the index.
+     * See {@link FuzzyIndex#matchOne(String, PreparedCompareFunction, boolean)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return the best match for the specified string
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public StringMatch matchOne(String s, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchOne(s, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in the index, ignoring candidates whose
+     * score is less than {@code scoreCutoff}.
+     * See {@link FuzzyIndex#matchOne(String, PreparedCompareFunction, boolean, int)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match for the specified string, or a match with a score of {@code -1} and empty text if no
+     *         candidate reaches {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public StringMatch matchOne(String s, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                int scoreCutoff) {
+        MatchStats stats = MatchStats.start("ConcurrentFuzzyIndex.matchOne");
+        try {
+            FuzzyStrings.validate(s);
+            State current = state;
+            int bestRatio = -1;
+            String matchedString = "";
+            int currentCutoff = scoreCutoff;
+            for (Segment segment : current.all) {
+                PreparedString query = segment.query(s, ignoreCase, stats);
+                PreparedString[] prepared = segment.prepared(ignoreCase);
+                for (int i = 0; i < prepared.length; i++) {
+                    if (segment.isRemoved(i)) {
+                        continue;
+                    }
+                    long time = stats == null ? 0 : System.nanoTime();
+                    int currentRatio = compareFunction.compare(query, prepared[i],
+                            FuzzyStrings.pruningCutoff(currentCutoff));
+                    if (stats != null) {
+                        stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                    }
+                    if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                        matchedString = prepared[i].getString();
+                        bestRatio = currentRatio;
+                        currentCutoff = Math.max(currentCutoff, currentRatio);
+                    }
+                }
+            }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores all candidates in the index and returns a list of matches sorted by score (in descending order).
+     * See {@link FuzzyIndex#matchAndSort(String, PreparedCompareFunction, boolean)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public List<StringMatch> matchAndSort(String s, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchAndSort(s, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Scores all candidates in the index and returns a list of the matches whose score is at least
+     * {@code scoreCutoff}, sorted by score (in descending order).
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public List<StringMatch> matchAndSort(String s, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                          int scoreCutoff) {
+        MatchStats stats = MatchStats.start("ConcurrentFuzzyIndex.matchAndSort");
+        try {
+            FuzzyStrings.validate(s);
+            State current = state;
+            List<StringMatch> results = new ArrayList<>();
+            for (Segment segment : current.all) {
+                PreparedString query = segment.query(s, ignoreCase, stats);
+                PreparedString[] prepared = segment.prepared(ignoreCase);
+                for (int i = 0; i < prepared.length; i++) {
+                    if (segment.isRemoved(i)) {
+                        continue;
+                    }
+                    long time = stats == null ? 0 : System.nanoTime();
+                    int ratio = compareFunction.compare(query, prepared[i], FuzzyStrings.pruningCutoff(scoreCutoff));
+                    if (stats != null) {
+                        stats.compared(time, ratio, ratio >= scoreCutoff);
+                    }
+                    if (ratio >= scoreCutoff) {
+                        results.add(new StringMatch(ratio, prepared[i].getString()));
+                    }
+                }
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the {@code k} best matches for the specified string among the candidates in the index, sorted by score
+     * (in descending order). See {@link FuzzyIndex#matchTopK(String, int, PreparedCompareFunction, boolean)}.
+     * @param s a string to match against the candidates
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid or {@code k} is negative
+     */
+    public List<StringMatch> matchTopK(String s, int k, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchTopK(s, k, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #matchTopK(String, int, PreparedCompareFunction, boolean)}, but only returns matches whose score
+     * is at least {@code scoreCutoff}.
+     * @param s a string to match against the candidates
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid or {@code k} is negative
+     */
+    public List<StringMatch> matchTopK(String s, int k, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                       int scoreCutoff) {
+        TopK<String> topK = new TopK<>(k);
+        MatchStats stats = MatchStats.start("ConcurrentFuzzyIndex.matchTopK");
+        try {
+            FuzzyStrings.validate(s);
+            State current = state;
+            // the position of a candidate across all segments, which orders candidates with the same score
+            int offset = 0;
+            for (Segment segment : current.all) {
+                PreparedString query = segment.query(s, ignoreCase, stats);
+                PreparedString[] prepared = segment.prepared(ignoreCase);
+                for (int i = 0; i < prepared.length; i++) {
+                    if (segment.isRemoved(i)) {
+                        continue;
+                    }
+                    int threshold = Math.max(topK.threshold(), scoreCutoff);
+                    long time = stats == null ? 0 : System.nanoTime();
+                    int ratio = compareFunction.compare(query, prepared[i], FuzzyStrings.pruningCutoff(threshold));
+                    if (stats != null) {
+                        stats.compared(time, ratio, ratio >= threshold);
+                    }
+                    if (ratio >= threshold) {
+                        topK.offer(ratio, offset + i, prepared[i].getString());
+                    }
+                }
+                offset += prepared.length;
+            }
+            int[] indices = topK.drain();
+            List<StringMatch> results = new ArrayList<>(indices.length);
+            for (int i = 0; i < indices.length; i++) {
+                results.add(new StringMatch(topK.score(i), topK.item(i)));
+            }
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    private static Segment[] append(Segment[] segments, Segment segment) {
+        Segment[] result = Arrays.copyOf(segments, segments.length + 1);
+        result[segments.length] = segment;
+        return result;
+    }
+
+    // returns the range [from, to) of adjacent segments to be merged next, or null if there is nothing to merge
+    private static int[] mergePlan(Segment[] segments) {
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (2 * segments[i].liveCount < segments[i].length()) {
+                return new int[] {i, i + 1};
+            }
+            if (i > 0 && segments[i - 1].liveCount <= MERGE_FACTOR * segments[i].liveCount) {
+                return new int[] {i - 1, i + 1};
+            }
+        }
+        return null;
+    }
+
+    private void scheduleMerge() {
+        if (merging.compareAndSet(false, true)) {
+            try {
+                mergeExecutor.execute(this::merge);
+            } catch (RejectedExecutionException e) {
+                merging.set(false);
+            }
+        }
+    }
+
+    // merges segments until there is nothing left to merge; only one merge runs at a time
+    private void merge() {
+        try {
+            while (true) {
+                Segment[] sources;
+                synchronized (writeLock) {
+                    Segment[] segments = state.segments;
+                    int[] plan = mergePlan(segments);
+                    if (plan == null) {
+                        // cleared under the lock, so a writer that publishes a change after this schedules a new merge
+                        merging.set(false);
+                        return;
+                    }
+                    sources = Arrays.copyOfRange(segments, plan[0], plan[1]);
+                }
+                List<String> candidates = new ArrayList<>();
+                for (Segment source : sources) {
+                    candidates.addAll(source.candidates());
+                }
+                Segment merged = candidates.isEmpty() ? null : Segment.of(candidates);
+                synchronized (writeLock) {
+                    publishMerge(sources, merged);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            merging.set(false);
+            throw e;
+        }
+    }
+
+    // replaces the sources with the merged segment, which holds the candidates the sources held when the merge
+    // started; must be called with the write lock held
+    private void publishMerge(Segment[] sources, Segment merged) {
+        State current = state;
+        Segment[] segments = current.segments;
+        // only merges replace segments and only one merge runs at a time, so the sources are still adjacent, although
+        // candidates may have been removed from them since
+        int from = 0;
+        while (!segments[from].sameCandidates(sources[0])) {
+            from++;
+        }
+        if (merged != null) {
+            long[] removed = merged.removed.clone();
+            int liveCount = merged.liveCount;
+            int position = 0;
+            for (int k = 0; k < sources.length; k++) {
+                Segment source = sources[k];
+                Segment now = segments[from + k];
+                for (int i = 0; i < source.length(); i++) {
+                    if (!source.isRemoved(i)) {
+                        if (now.isRemoved(i)) {
+                            removed[position >>> 6] |= 1L << position;
+                            liveCount--;
+                        }
+                        position++;
+                    }
+                }
+            }
+            merged = liveCount == 0 ? null : merged.withRemoved(removed, liveCount);
+        }
+        Segment[] result = new Segment[segments.length - sources.length + (merged == null ? 0 : 1)];
+        System.arraycopy(segments, 0, result, 0, from);
+        if (merged != null) {
+            result[from] = merged;
+        }
+        System.arraycopy(segments, from + sources.length, result, result.length - (segments.length - from
+                - sources.length), segments.length - from - sources.length);
+        state = new State(result, current.buffer, current.size);
+    }
+
+    /**
+     * The candidates as seen by a query: the segments, oldest first, and the buffer of recently added candidates.
+     */
+    private static final class State {
+        final Segment[] segments;
+        final Segment buffer;
+        final int size;
+        // the segments followed by the buffer
+        final Segment[] all;
+
+        State(Segment[] segments, Segment buffer, int size) {
+            this.segments = segments;
+            this.buffer = buffer;
+            this.size = size;
+            this.all = append(segments, buffer);
+        }
+    }
+
+    /**
+     * An immutable array of prepared candidates and a bitmap of the ones that have been removed. The candidates of
+     * a segment share a token dictionary, except for the ones in the buffer, which have their own dictionaries so
+     * that the buffer can grow without modifying a dictionary that queries are reading.
+     */
+    private static final class Segment {
+
+        static final Segment EMPTY = new Segment(new PreparedString[0], new PreparedString[0], null, new int[0],
+                new long[0], 0);
+
+        final PreparedString[] candidates;
+        final PreparedString[] candidatesIgnoreCase;
+        final TokenDictionary dictionary;
+        final int[] hashes;
+        final long[] removed;
+        final int liveCount;
+
+        Segment(PreparedString[] candidates, PreparedString[] candidatesIgnoreCase, TokenDictionary dictionary,
+                int[] hashes, long[] removed, int liveCount) {
+            this.candidates = candidates;
+            this.candidatesIgnoreCase = candidatesIgnoreCase;
+            this.dictionary = dictionary;
+            this.hashes = hashes;
+            this.removed = removed;
+            this.liveCount = liveCount;
+        }
+
+        static Segment of(List<String> candidates) {
+            FuzzyIndex index = FuzzyIndex.of(candidates);
+            int[] hashes = new int[candidates.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = candidates.get(i).hashCode();
+            }
+            return new Segment(index.candidates(false), index.candidates(true), index.dictionary(), hashes,
+                    new long[(hashes.length + 63) >>> 6], hashes.length);
+        }
+
+        int length() {
+            return candidates.length;
+        }
+
+        boolean isRemoved(int i) {
+            return (removed[i >>> 6] & (1L << i)) != 0;
+        }
+
+        boolean sameCandidates(Segment other) {
+            return candidates == other.candidates;
+        }
+
+        PreparedString[] prepared(boolean ignoreCase) {
+            return ignoreCase ? candidatesIgnoreCase : candidates;
+        }
+
+        // prepares the query with the dictionary of the segment, so that tokens are compared by ID
+        PreparedString query(String s, boolean ignoreCase, MatchStats stats) {
+            long time = stats == null ? 0 : System.nanoTime();
+            PreparedString query = PreparedString.of(s, ignoreCase, dictionary);
+            if (stats != null) {
+                stats.normalized(time);
+            }
+            return query;
+        }
+
+        // returns the candidates that have not been removed, in order
+        List<String> candidates() {
+            List<String> result = new ArrayList<>(liveCount);
+            for (int i = 0; i < candidates.length; i++) {
+                if (!isRemoved(i)) {
+                    result.add(candidates[i].getString());
+                }
+            }
+            return result;
+        }
+
+        Segment append(String candidate, PreparedString prepared, PreparedString preparedIgnoreCase) {
+            int n = candidates.length;
+            PreparedString[] newCandidates = Arrays.copyOf(candidates, n + 1);
+            PreparedString[] newCandidatesIgnoreCase = Arrays.copyOf(candidatesIgnoreCase, n + 1);
+            int[] newHashes = Arrays.copyOf(hashes, n + 1);
+            newCandidates[n] = prepared;
+            newCandidatesIgnoreCase[n] = preparedIgnoreCase;
+            newHashes[n] = candidate.hashCode();
+            return new Segment(newCandidates, newCandidatesIgnoreCase, dictionary, newHashes,
+                    Arrays.copyOf(removed, (n + 64) >>> 6), liveCount + 1);
+        }
+
+        Segment remove(String candidate, int hash) {
+            long[] newRemoved = null;
+            int newLiveCount = liveCount;
+            for (int i = 0; i < hashes.length; i++) {
+                if (hashes[i] == hash && !isRemoved(i) && candidates[i].getString().equals(candidate)) {
+                    if (newRemoved == null) {
+                        newRemoved = removed.clone();
+                    }
+                    newRemoved[i >>> 6] |= 1L << i;
+                    newLiveCount--;
+                }
+            }
+            return newRemoved == null ? this : withRemoved(newRemoved, newLiveCount);
+        }
+
+        Segment withRemoved(long[] removed, int liveCount) {
+            return new Segment(candidates, candidatesIgnoreCase, dictionary, hashes, removed, liveCount);
+        }
+    }
+}
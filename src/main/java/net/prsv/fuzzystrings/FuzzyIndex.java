@@ -0,0 +1,296 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable collection of candidates that have been prepared for repeated matching. Building the index normalizes
+ * and tokenizes every candidate once, both as is and converted to lowercase, so that the queries matched against
+ * the index only pay for their own normalization and for the comparisons themselves. The tokens of all candidates
+ * share one {@link TokenDictionary}, which also encodes the tokens of the queries, so token-based comparisons only
+ * compare {@code int} IDs.
+ * <p>
+ * The methods of this class return the same results as the corresponding methods of {@link FuzzyStrings} called
+ * with the collection the index has been built from. Instances are immutable and can be shared between threads.
+ */
+public final class FuzzyIndex {
+
+    private final PreparedString[] candidates;
+    private final PreparedString[] candidatesIgnoreCase;
+    private final TokenDictionary dictionary;
+
+    private FuzzyIndex(PreparedString[] candidates, PreparedString[] candidatesIgnoreCase,
+                       TokenDictionary dictionary) {
+        this.candidates = candidates;
+        this.candidatesIgnoreCase = candidatesIgnoreCase;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Builds an index of the specified candidates. The order of the candidates is preserved.
+     * @param candidates a collection of strings to be indexed
+     * @return the index
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static FuzzyIndex of(Collection<String> candidates) {
+        PreparedString[] prepared = new PreparedString[candidates.size()];
+        PreparedString[] preparedIgnoreCase = new PreparedString[candidates.size()];
+        TokenDictionary dictionary = new TokenDictionary();
+        int i = 0;
+        for (String candidate : candidates) {
+            FuzzyStrings.validate(candidate);
+            prepared[i] = PreparedString.ofCandidate(candidate, false, dictionary).prepareAll();
+            PreparedString ignoreCase = prepared[i].asIgnoreCase();
+            if (ignoreCase == null) {
+                ignoreCase = PreparedString.ofCandidate(candidate, true, dictionary).prepareAll();
+            }
+            preparedIgnoreCase[i] = ignoreCase;
+            i++;
+        }
+        dictionary.freeze();
+        return new FuzzyIndex(prepared, preparedIgnoreCase, dictionary);
+    }
+
+    /**
+     * Opens an index saved by {@link #writeSnapshot(Path)}. The snapshot is memory-mapped and read without
+     * normalizing or tokenizing any candidate again, which makes opening a large index much faster than building it.
+     * @param file the snapshot file
+     * @return the index
+     * @throws IOException if an I/O error occurs, or the file is not an index snapshot, has been written in an
+     *                     unsupported version of the format, or is corrupted
+     */
+    public static FuzzyIndex openSnapshot(Path file) throws IOException {
+        IndexSnapshot snapshot = IndexSnapshot.read(file);
+        return new FuzzyIndex(snapshot.candidates, snapshot.candidatesIgnoreCase, snapshot.dictionary);
+    }
+
+    /**
+     * Saves the index to the specified file, replacing the file if it exists. The snapshot holds the candidates
+     * along with their normalized text, the token dictionary and the token IDs of every candidate, and is protected
+     * by a checksum. See {@link #openSnapshot(Path)}.
+     * @param file the snapshot file
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        IndexSnapshot.write(file, candidates, candidatesIgnoreCase, dictionary);
+    }
+
+    /**
+     * Returns the number of candidates in the index.
+     * @return the number of candidates in the index
+     */
+    public int size() {
+        return candidates.length;
+    }
+
+    /**
+     * Returns the candidate at the specified position.
+     * @param index the position of the candidate
+     * @return the candidate at the specified position
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public String get(int index) {
+        return candidates[index].getString();
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in the index.
+     * See {@link FuzzyStrings#matchOne(String, Collection, StringCompareFunction, boolean)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return the best match for the specified string
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public StringMatch matchOne(String s, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchOne(s, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in the index, ignoring candidates whose
+     * score is less than {@code scoreCutoff}.
+     * See {@link FuzzyStrings#matchOne(PreparedString, Collection, PreparedCompareFunction, int)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match for the specified string, or a match with a score of {@code -1} and empty text if no
+     *         candidate reaches {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public StringMatch matchOne(String s, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyIndex.matchOne");
+        try {
+            PreparedString query = query(s, ignoreCase, stats);
+            PreparedString[] prepared = candidates(ignoreCase);
+            int bestRatio = -1;
+            String matchedString = "";
+            int currentCutoff = scoreCutoff;
+            for (PreparedString candidate : prepared) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int currentRatio = compareFunction.compare(query, candidate, FuzzyStrings.pruningCutoff(currentCutoff));
+                if (stats != null) {
+                    stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                }
+                if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                    matchedString = candidate.getString();
+                    bestRatio = currentRatio;
+                    currentCutoff = Math.max(currentCutoff, currentRatio);
+                }
+            }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores all candidates in the index and returns a list of matches sorted by score (in descending order).
+     * See {@link FuzzyStrings#matchAndSort(String, Collection, StringCompareFunction, boolean)}.
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public List<StringMatch> matchAndSort(String s, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchAndSort(s, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Scores all candidates in the index and returns a list of the matches whose score is at least
+     * {@code scoreCutoff}, sorted by score (in descending order).
+     * @param s a string to match against the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public List<StringMatch> matchAndSort(String s, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                          int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyIndex.matchAndSort");
+        try {
+            PreparedString query = query(s, ignoreCase, stats);
+            List<StringMatch> results = new ArrayList<>();
+            for (PreparedString candidate : candidates(ignoreCase)) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(query, candidate, FuzzyStrings.pruningCutoff(scoreCutoff));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= scoreCutoff);
+                }
+                if (ratio >= scoreCutoff) {
+                    results.add(new StringMatch(ratio, candidate.getString()));
+                }
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the {@code k} best matches for the specified string among the candidates in the index, sorted by score
+     * (in descending order). Candidates with the same score are ordered by their position in the index, so the
+     * result is the same as the first {@code k} elements of the list returned by
+     * {@link #matchAndSort(String, PreparedCompareFunction, boolean)}. Only the current {@code k} best matches are
+     * kept while the candidates are scored, and each new candidate is compared with the score of the worst of them
+     * as the cutoff.
+     * @param s a string to match against the candidates
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid or {@code k} is negative
+     */
+    public List<StringMatch> matchTopK(String s, int k, PreparedCompareFunction compareFunction, boolean ignoreCase) {
+        return matchTopK(s, k, compareFunction, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #matchTopK(String, int, PreparedCompareFunction, boolean)}, but only returns matches whose score
+     * is at least {@code scoreCutoff}.
+     * @param s a string to match against the candidates
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid or {@code k} is negative
+     */
+    public List<StringMatch> matchTopK(String s, int k, PreparedCompareFunction compareFunction, boolean ignoreCase,
+                                       int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyIndex.matchTopK");
+        try {
+            PreparedString query = query(s, ignoreCase, stats);
+            PreparedString[] prepared = candidates(ignoreCase);
+            TopK<Void> topK = new TopK<>(k);
+            for (int i = 0; i < prepared.length; i++) {
+                int threshold = Math.max(topK.threshold(), scoreCutoff);
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(query, prepared[i], FuzzyStrings.pruningCutoff(threshold));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= threshold);
+                }
+                if (ratio >= threshold) {
+                    topK.offer(ratio, i);
+                }
+            }
+            int[] indices = topK.drain();
+            List<StringMatch> results = new ArrayList<>(indices.length);
+            for (int i = 0; i < indices.length; i++) {
+                results.add(new StringMatch(topK.score(i), prepared[indices[i]].getString()));
+            }
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    // prepares the query, recording the time it takes if there are statistics to record to
+    private PreparedString query(String s, boolean ignoreCase, MatchStats stats) {
+        long time = stats == null ? 0 : System.nanoTime();
+        PreparedString query = PreparedString.of(s, ignoreCase, dictionary);
+        if (stats != null) {
+            stats.normalized(time);
+        }
+        return query;
+    }
+
+    /**
+     * Returns the prepared candidates, converted to lowercase if {@code ignoreCase} is {@code true}. The array must
+     * not be modified.
+     */
+    PreparedString[] candidates(boolean ignoreCase) {
+        return ignoreCase ? candidatesIgnoreCase : candidates;
+    }
+
+    /**
+     * Returns the dictionary shared by the tokens of all candidates.
+     */
+    TokenDictionary dictionary() {
+        return dictionary;
+    }
+}
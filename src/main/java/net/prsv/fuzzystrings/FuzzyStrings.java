@@ -7,7 +7,7 @@ See LICENSE for details.
 package net.prsv.fuzzystrings;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class implements fuzzy string matching using <a href="https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance</a>.
@@ -19,6 +19,25 @@ public class FuzzyStrings {
     private FuzzyStrings() {
     }
 
+    /**
+     * Sets the listener that receives the {@link MatchStats statistics} of every matching operation of this class,
+     * {@link FuzzyIndex}, {@link QGramIndex} and {@link CandidateArena}. The parallel methods of this class report the
+     * same statistics as the corresponding sequential ones, whatever the number of candidates. While no listener is
+     * set, which is the default, no statistics are recorded.
+     * @param listener the listener, or {@code null} to stop recording statistics
+     */
+    public static void setMatchListener(MatchListener listener) {
+        MatchStats.setListener(listener);
+    }
+
+    /**
+     * Returns the listener set by {@link #setMatchListener(MatchListener)}.
+     * @return the listener, or {@code null} if no listener is set
+     */
+    public static MatchListener getMatchListener() {
+        return MatchStats.getListener();
+    }
+
     /**
      * Prepares the specified {@link String} for future processing.
      * @param s the {@code String} to be processed
@@ -26,17 +45,19 @@ public class FuzzyStrings {
      * @param removePunctuation if {@code true}, the method will strip punctuation from the return value
      * @return the prepared string
      */
-    private static String prepare(String s, boolean toLowerCase, boolean removePunctuation) {
-        String result = s;
+    static String prepare(String s, boolean toLowerCase, boolean removePunctuation) {
         if (removePunctuation) {
-            result = Pattern.compile("[\\W]+", Pattern.UNICODE_CHARACTER_CLASS).matcher(result).replaceAll(" ");
-            result = result.replaceAll("[\\s]+", " ");
-            result = result.strip();
-        }
-        if (toLowerCase) {
-            result = result.toLowerCase(Locale.ROOT);
+            Tokenizer tokenizer = Tokenizer.get().tokenize(s, toLowerCase);
+            StringBuilder result = new StringBuilder(s.length());
+            for (int i = 0; i < tokenizer.count(); i++) {
+                if (i > 0) {
+                    result.append(' ');
+                }
+                result.append(tokenizer.chars(), tokenizer.start(i), tokenizer.end(i) - tokenizer.start(i));
+            }
+            return result.toString();
         }
-        return result;
+        return toLowerCase ? s.toLowerCase(Locale.ROOT) : s;
     }
 
 
@@ -46,83 +67,171 @@ public class FuzzyStrings {
      * @param s a string to be checked
      * @return {@code true} if the specified string is valid, {@code false} otherwise
      */
-    private static boolean isInvalid(String s) {
-        return (s == null || s.strip().length() == 0);
+    static boolean isInvalid(String s) {
+        if (s == null) {
+            return true;
+        }
+        // same as s.strip().isEmpty(), without creating the stripped string; whitespace characters are all in the BMP
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Returns the <a href="https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance</a> between the
-     * specified strings.
-     * @param s1 a string to be compared with {@code s2}
-     * @param s2 a string to be compared with {@code s1}
-     * @return Levenshtein distance between the two strings
+     * Throws an {@link IllegalArgumentException} if any of the specified strings is invalid.
+     * @param strings the strings to be checked
+     * @throws IllegalArgumentException if {@code isInvalid(s) == true} for any of the strings
      */
-    private static int levenshtein(String s1, String s2) {
-        int rowLength = s1.length() + 1;
-        int columnHeight = s2.length() + 1;
-        int[][] distance = new int[rowLength][columnHeight];
-
-        for (int row = 1; row < rowLength; row++) {
-            for (int column = 1; column < columnHeight; column++) {
-                distance[row][0] = row;
-                distance[0][column] = column;
+    static void validate(String... strings) {
+        for (String s : strings) {
+            if (isInvalid(s)) {
+                throw new IllegalArgumentException("String is null, empty, or contains only whitespace characters.");
             }
         }
+    }
 
-        int cost;
+    /**
+     * Splits the specified string into tokens. A token is an uninterrupted sequence of word characters
+     * ({@code \w} in regex parlance). See {@link Tokenizer}.
+     * @param s the string to be split into tokens
+     * @param toLowerCase if {@code true}, the tokens will be converted to lowercase
+     * @return the tokens of {@code s}
+     */
+    static String[] tokenize(String s, boolean toLowerCase) {
+        return Tokenizer.get().tokenize(s, toLowerCase).tokens();
+    }
 
-        for (int column = 1; column < columnHeight; column++) {
-            for (int row = 1; row < rowLength; row++) {
-                if (s1.charAt(row - 1) != s2.charAt(column - 1)) {
-                    cost = 1;
-                } else {
-                    cost = 0;
-                }
-                distance[row][column] = Math.min(distance[row - 1][column] + 1,
-                        distance[row][column - 1] + 1);
-                distance[row][column] = Math.min(distance[row][column],
-                        distance[row - 1][column - 1] + cost);
-            }
+    /**
+     * Throws an {@link IllegalArgumentException} unless both prepared strings agree on whether differences in case
+     * are ignored.
+     */
+    private static void checkCompatible(PreparedString s1, PreparedString s2) {
+        if (s1.isIgnoreCase() != s2.isIgnoreCase()) {
+            throw new IllegalArgumentException("Prepared strings disagree on whether to ignore case.");
         }
-
-        return distance[rowLength - 1][columnHeight - 1];
     }
 
-    /** Similar to {@link #levenshtein(String, String)} but based on tokens instead of individual characters.
-     * A token is an uninterrupted sequence of word characters ({@code \w} in regex parlance).
-     * @param tokens1 an array of tokens to compare with {@code tokens2}
-     * @param tokens2 an array of tokens to compare with {@code tokens1}
-     * @return distance between {@code tokens1} and {@code tokens2}
+    /**
+     * Returns the <a href="https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance</a> between the
+     * specified strings, or {@code maxDistance + 1} if the distance is greater than {@code maxDistance}. Depending on
+     * {@code maxDistance}, the distance is computed either by a banded algorithm that only looks at the diagonals
+     * that can still hold a distance of at most {@code maxDistance}, or by the bit-parallel algorithm implemented
+     * in {@link LevenshteinPattern}; both stop as soon as the distance is known to exceed {@code maxDistance}.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param maxDistance the maximum distance of interest
+     * @return Levenshtein distance between the two strings, or {@code maxDistance + 1} if it is greater
+     *         than {@code maxDistance}
      */
-    private static int levenshteinToken(String[] tokens1, String[] tokens2) {
-        int rowLength = tokens1.length + 1;
-        int columnHeight = tokens2.length + 1;
-        int[][] distance = new int[rowLength][columnHeight];
+    private static int levenshtein(String s1, String s2, int maxDistance) {
+        return LevenshteinPattern.distance(s1, s2, maxDistance);
+    }
 
-        for (int row = 1; row < rowLength; row++) {
-            for (int column = 1; column < columnHeight; column++) {
-                distance[row][0] = row;
-                distance[0][column] = column;
-            }
+    /**
+     * Same as {@link #levenshtein(String, String, int)}, but reuses the pre-processed Levenshtein pattern of
+     * {@code s1} if it has one.
+     */
+    private static int levenshtein(PreparedString s1, PreparedString s2, int maxDistance) {
+        LevenshteinPattern pattern = s1.pattern();
+        if (pattern == null) {
+            return levenshtein(s1.text(), s2.text(), maxDistance);
         }
+        return pattern.distance(s2.text(), 0, s2.text().length(), maxDistance);
+    }
 
-        int cost;
+    // row buffers of levenshteinToken(), reused by all calls on the same thread
+    private static final ThreadLocal<int[]> tokenRows = ThreadLocal.withInitial(() -> new int[64]);
 
-        for (int column = 1; column < columnHeight; column++) {
-            for (int row = 1; row < rowLength; row++) {
-                if (!tokens1[row - 1].equals(tokens2[column - 1])) {
-                    cost = 1;
-                } else {
-                    cost = 0;
-                }
-                distance[row][column] = Math.min(distance[row - 1][column] + 1,
-                        distance[row][column - 1] + 1);
-                distance[row][column] = Math.min(distance[row][column],
-                        distance[row - 1][column - 1] + cost);
+    /**
+     * Similar to {@link #levenshtein(String, String, int)} but based on tokens instead of individual characters.
+     * A token is an uninterrupted sequence of word characters ({@code \w} in regex parlance); the tokens are
+     * represented by the IDs a {@link TokenDictionary} has assigned to them.
+     * Only the cells at most {@code maxDistance} diagonals away from the main diagonal of the distance matrix are
+     * computed, and the computation stops as soon as the minimum of a row exceeds {@code maxDistance}.
+     * @param tokens1 an array of token IDs to compare with {@code tokens2}
+     * @param tokens2 an array of token IDs to compare with {@code tokens1}
+     * @param maxDistance the maximum distance of interest
+     * @return distance between {@code tokens1} and {@code tokens2}, or {@code maxDistance + 1} if it is greater
+     *         than {@code maxDistance}
+     */
+    private static int levenshteinToken(int[] tokens1, int[] tokens2, int maxDistance) {
+        int rows = tokens1.length;
+        int columns = tokens2.length;
+        maxDistance = Math.min(maxDistance, Math.max(rows, columns));
+        int outside = maxDistance + 1;
+        if (Math.abs(rows - columns) > maxDistance) {
+            return outside;
+        }
+        // row[column] holds the distance between the first i tokens of tokens1 and the first column tokens of tokens2
+        int[] row = tokenRows.get();
+        if (row.length <= columns) {
+            row = new int[Math.max(columns + 1, 2 * row.length)];
+            tokenRows.set(row);
+        }
+        for (int column = 0; column <= columns; column++) {
+            row[column] = Math.min(column, outside);
+        }
+        for (int i = 1; i <= rows; i++) {
+            int low = Math.max(1, i - maxDistance);
+            int high = Math.min(columns, i + maxDistance);
+            int token = tokens1[i - 1];
+            int diagonal = row[low - 1];
+            int left = low == 1 ? Math.min(i, outside) : outside;
+            row[low - 1] = left;
+            int rowMinimum = left;
+            for (int column = low; column <= high; column++) {
+                int up = row[column];
+                int value = diagonal + (token == tokens2[column - 1] ? 0 : 1);
+                value = Math.min(value, Math.min(up, left) + 1);
+                diagonal = up;
+                row[column] = value;
+                left = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > maxDistance) {
+                return outside;
             }
         }
+        return Math.min(row[columns], outside);
+    }
 
-        return distance[rowLength - 1][columnHeight - 1];
+    /**
+     * Converts a distance between two sequences into a similarity score on the scale from 0 to 100.
+     * @param lengthSum the sum of the lengths of the two sequences
+     * @param distance the distance between the two sequences
+     * @return similarity score on the scale from 0 to 100
+     */
+    static int similarity(int lengthSum, int distance) {
+        float ratio = (float) (lengthSum - distance) / lengthSum;
+        return Math.round(ratio * 100);
+    }
+
+    /**
+     * Returns the largest distance between two sequences with the specified sum of lengths that still yields a
+     * similarity score of at least {@code scoreCutoff}, or {@code -1} if no distance does. Note that the distance
+     * may exceed {@code lengthSum} when converting to lowercase makes a string longer, in which case the score
+     * is negative.
+     * @param lengthSum the sum of the lengths of the two sequences
+     * @param scoreCutoff the minimum score of interest
+     * @return the largest distance compatible with {@code scoreCutoff}, or {@code -1}
+     */
+    static int maxDistance(int lengthSum, int scoreCutoff) {
+        // converting to lowercase at most doubles the length of a string, so no score is less than -100
+        if (scoreCutoff <= -100) {
+            return Integer.MAX_VALUE - 1;
+        }
+        // start from the analytical estimate and correct it with the exact (floating point) score formula
+        int distance = (int) Math.max(0, (long) lengthSum * (100 - scoreCutoff) / 100);
+        while (similarity(lengthSum, distance + 1) >= scoreCutoff) {
+            distance++;
+        }
+        while (distance >= 0 && similarity(lengthSum, distance) < scoreCutoff) {
+            distance--;
+        }
+        return distance;
     }
 
     /**
@@ -135,18 +244,76 @@ public class FuzzyStrings {
      * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
      */
     public static int ratio(String s1, String s2, boolean ignoreCase) {
-        if (isInvalid(s1) || isInvalid(s2)) {
-            throw new IllegalArgumentException("String is null, empty, or contains only whitespace characters.");
-        }
+        return ratio(s1, s2, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #ratio(String, String, boolean)}, but only scores of at least {@code scoreCutoff} are of
+     * interest. The cutoff is converted into the maximum Levenshtein distance that can still reach it; pairs
+     * whose length difference alone exceeds that distance are rejected without being compared, and the distance
+     * computation for the remaining pairs stops as soon as it exceeds the maximum.
+     * @param s1 a string to be compared to {@code s2}
+     * @param s2 a string to be compared to {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int ratio(String s1, String s2, boolean ignoreCase, int scoreCutoff) {
+        validate(s1, s2);
+        PreparedString prepared1 = PreparedString.ofCandidate(s1, ignoreCase);
+        return ratio(prepared1, PreparedString.ofCandidate(s2, prepared1), scoreCutoff);
+    }
+
+    /**
+     * Same as {@link #ratio(String, String, boolean, int)}, but works with prepared strings.
+     * @param s1 a prepared string to be compared to {@code s2}
+     * @param s2 a prepared string to be compared to {@code s1}
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if only one of the two strings has been prepared to ignore differences in case
+     */
+    public static int ratio(PreparedString s1, PreparedString s2, int scoreCutoff) {
+        checkCompatible(s1, s2);
         // convenient shortcut if the strings are, in fact, equal
-        if (s1.equals(s2)) {
-            return 100;
+        if (s1.getString().equals(s2.getString())) {
+            return cutoff(100, scoreCutoff);
+        }
+        int lengthSum = s1.getString().length() + s2.getString().length();
+        int maxDistance = maxDistance(lengthSum, scoreCutoff);
+        if (maxDistance < 0) {
+            return 0;
+        }
+        // the distance is at least the difference between the lengths
+        if (Math.abs(s1.text().length() - s2.text().length()) > maxDistance) {
+            MatchStats.reject(PruneReason.LENGTH);
+            return 0;
         }
-        String str1 = prepare(s1, ignoreCase, false);
-        String str2 = prepare(s2, ignoreCase, false);
-        int distance = levenshtein(str1, str2);
-        float ratio = (float) (s1.length() + s2.length() - distance) / (s1.length() + s2.length());
-        return Math.round(ratio*100);
+        int distance = levenshtein(s1, s2, maxDistance);
+        if (distance > maxDistance) {
+            return 0;
+        }
+        return cutoff(similarity(lengthSum, distance), scoreCutoff);
+    }
+
+    /**
+     * Returns {@code score} if it is at least {@code scoreCutoff}, {@code 0} otherwise.
+     */
+    private static int cutoff(int score, int scoreCutoff) {
+        return score >= scoreCutoff ? score : 0;
+    }
+
+    /**
+     * Returns the cutoff to pass to a compare function when only scores of at least {@code scoreCutoff} are of
+     * interest. Compare functions return {@code 0} for scores below the cutoff, which cannot be told apart from a
+     * genuine score of {@code 0} unless the cutoff is positive, so non-positive cutoffs disable pruning altogether.
+     * @param scoreCutoff the minimum score of interest
+     * @return the cutoff to pass to a compare function
+     */
+    static int pruningCutoff(int scoreCutoff) {
+        return scoreCutoff > 0 ? scoreCutoff : Integer.MIN_VALUE;
     }
 
 
@@ -158,7 +325,7 @@ public class FuzzyStrings {
     }
 
     /**
-     * Returns similarity between s1 and s2 based on {@link #levenshteinToken(String[], String[])}.
+     * Returns similarity between s1 and s2 based on {@link #levenshteinToken(int[], int[], int)}.
      * The method will return {@code -1} if both s1 and s2 do not contain any tokens.
      * @param s1 a string to be compared with {@code s2}
      * @param s2 a string to be compared with {@code s1}
@@ -167,17 +334,57 @@ public class FuzzyStrings {
      * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
      */
     public static int ratioToken(String s1, String s2, boolean ignoreCase) {
-        if (isInvalid(s1) || isInvalid(s2)) {
-            throw new IllegalArgumentException("String is null, empty, or contains only whitespace characters.");
-        }
-        String[] tokens1 = prepare(s1, ignoreCase, true).split("\\s");
-        String[] tokens2 = prepare(s2, ignoreCase, true).split("\\s");
+        return ratioToken(s1, s2, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #ratioToken(String, String, boolean)}, but only scores of at least {@code scoreCutoff} are
+     * of interest. The cutoff is converted into the maximum token distance that can still reach it, and the
+     * token distance computation stops as soon as it exceeds the maximum.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int ratioToken(String s1, String s2, boolean ignoreCase, int scoreCutoff) {
+        validate(s1, s2);
+        PreparedString prepared1 = PreparedString.ofCandidate(s1, ignoreCase);
+        return ratioToken(prepared1, PreparedString.ofCandidate(s2, prepared1), scoreCutoff);
+    }
+
+    /**
+     * Same as {@link #ratioToken(String, String, boolean, int)}, but works with prepared strings.
+     * @param s1 a prepared string to be compared with {@code s2}
+     * @param s2 a prepared string to be compared with {@code s1}
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if only one of the two strings has been prepared to ignore differences in case
+     */
+    public static int ratioToken(PreparedString s1, PreparedString s2, int scoreCutoff) {
+        checkCompatible(s1, s2);
+        int[] tokens1 = s1.tokenIds();
+        int[] tokens2 = s2.tokenIds(s1.dictionary());
         if (tokens1.length == 0 && tokens2.length == 0) {
-            return -1;
+            return cutoff(-1, scoreCutoff);
+        }
+        int lengthSum = tokens1.length + tokens2.length;
+        int maxDistance = maxDistance(lengthSum, scoreCutoff);
+        if (maxDistance < 0) {
+            return 0;
+        }
+        if (Math.abs(tokens1.length - tokens2.length) > maxDistance) {
+            MatchStats.reject(PruneReason.LENGTH);
+            return 0;
+        }
+        int distance = levenshteinToken(tokens1, tokens2, maxDistance);
+        if (distance > maxDistance) {
+            return 0;
         }
-        int distance = levenshteinToken(tokens1, tokens2);
-        float ratio = (float) (tokens1.length + tokens2.length - distance) / (tokens1.length + tokens2.length);
-        return Math.round(ratio*100);
+        return cutoff(similarity(lengthSum, distance), scoreCutoff);
     }
 
     /**
@@ -197,24 +404,47 @@ public class FuzzyStrings {
      * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
      */
     public static int ratioTokenSet(String s1, String s2, boolean ignoreCase) {
-        if (isInvalid(s1) || isInvalid(s2)) {
-            throw new IllegalArgumentException("String is null, empty, or contains only whitespace characters.");
-        }
-        HashSet<String> set1 = new HashSet<>(List.of(prepare(s1, ignoreCase, true).split("\\s")));
-        HashSet<String> set2 = new HashSet<>(List.of(prepare(s2, ignoreCase, true).split("\\s")));
-        int numElements = set1.size() + set2.size();
+        return ratioTokenSet(s1, s2, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #ratioTokenSet(String, String, boolean)}, but only scores of at least {@code scoreCutoff} are
+     * of interest.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int ratioTokenSet(String s1, String s2, boolean ignoreCase, int scoreCutoff) {
+        validate(s1, s2);
+        PreparedString prepared1 = PreparedString.ofCandidate(s1, ignoreCase);
+        return ratioTokenSet(prepared1, PreparedString.ofCandidate(s2, prepared1), scoreCutoff);
+    }
+
+    /**
+     * Same as {@link #ratioTokenSet(String, String, boolean, int)}, but works with prepared strings.
+     * @param s1 a prepared string to be compared with {@code s2}
+     * @param s2 a prepared string to be compared with {@code s1}
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if only one of the two strings has been prepared to ignore differences in case
+     */
+    public static int ratioTokenSet(PreparedString s1, PreparedString s2, int scoreCutoff) {
+        checkCompatible(s1, s2);
+        int[] set1 = s1.tokenSet();
+        int[] set2 = s2.tokenSet(s1.dictionary());
+        int numElements = set1.length + set2.length;
         if (numElements == 0) {
-            return -1; // both s1 and s2 have zero tokens
+            return cutoff(-1, scoreCutoff); // both s1 and s2 have zero tokens
         }
-        if (set1.equals(set2)) {
-            return 100;
-        }
-        HashSet<String> set1Copy = new HashSet<>(set1);
-        set1.removeAll(set2);
-        set2.removeAll(set1Copy);
-        int difference = set1.size() + set2.size();
-        float ratio = (float) (numElements - difference) / numElements;
-        return Math.round(ratio * 100);
+        int common = Kernels.INSTANCE.countCommon(set1, set2);
+        // the tokens that are not in both sets
+        int difference = numElements - 2 * common;
+        return cutoff(similarity(numElements, difference), scoreCutoff);
     }
 
     /**
@@ -224,6 +454,98 @@ public class FuzzyStrings {
         return ratioTokenSet(s1, s2, false);
     }
 
+    /**
+     * Returns similarity between the shorter of {@code s1} and {@code s2} and the substring of the longer one that
+     * matches it best, e.g. to find a short name within a long title. The substring is found by a semi-global
+     * alignment, i.e. the Levenshtein distance where skipping characters at the start and at the end of the longer
+     * string is free, which the bit-parallel algorithm computes in a single pass over the longer string. The score is
+     * {@code round((2 * m - d) / (2 * m) * 100)}, where {@code m} is the length of the shorter string and {@code d}
+     * is the distance, so it is 100 if the shorter string occurs in the longer one. If both strings have the same
+     * length, the better of the two alignments is used.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return similarity between the two strings on the scale from 0 to 100
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int partialRatio(String s1, String s2, boolean ignoreCase) {
+        return partialRatio(s1, s2, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #partialRatio(String, String, boolean)}, but only scores of at least {@code scoreCutoff} are of
+     * interest. The cutoff is converted into the maximum distance that can still reach it, and the alignment stops as
+     * soon as no substring can be within that distance anymore.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int partialRatio(String s1, String s2, boolean ignoreCase, int scoreCutoff) {
+        validate(s1, s2);
+        PreparedString prepared1 = PreparedString.ofCandidate(s1, ignoreCase);
+        return partialRatio(prepared1, PreparedString.ofCandidate(s2, prepared1), scoreCutoff);
+    }
+
+    /**
+     * Same as {@link #partialRatio(String, String, boolean, int)}, but works with prepared strings. The prepared
+     * Levenshtein pattern of {@code s1} is reused if {@code s1} is the shorter string.
+     * @param s1 a prepared string to be compared with {@code s2}
+     * @param s2 a prepared string to be compared with {@code s1}
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if only one of the two strings has been prepared to ignore differences in case
+     */
+    public static int partialRatio(PreparedString s1, PreparedString s2, int scoreCutoff) {
+        checkCompatible(s1, s2);
+        if (s1.getString().equals(s2.getString())) {
+            return cutoff(100, scoreCutoff);
+        }
+        String text1 = s1.text();
+        String text2 = s2.text();
+        int m = Math.min(text1.length(), text2.length());
+        int lengthSum = 2 * m;
+        int maxDistance = maxDistance(lengthSum, scoreCutoff);
+        if (maxDistance < 0) {
+            return 0;
+        }
+        int distance;
+        if (text1.length() < text2.length()) {
+            distance = searchDistance(s1, text2, maxDistance);
+        } else if (text1.length() > text2.length()) {
+            distance = searchDistance(s2, text1, maxDistance);
+        } else {
+            distance = searchDistance(s1, text2, maxDistance);
+            if (distance > 0) {
+                distance = Math.min(distance, searchDistance(s2, text1, Math.min(maxDistance, distance - 1)));
+            }
+        }
+        if (distance > maxDistance) {
+            return 0;
+        }
+        return cutoff(similarity(lengthSum, distance), scoreCutoff);
+    }
+
+    // the semi-global distance of the text of a prepared string within a text, see partialRatio()
+    private static int searchDistance(PreparedString pattern, String text, int maxDistance) {
+        LevenshteinPattern prepared = pattern.pattern();
+        if (prepared == null) {
+            prepared = new LevenshteinPattern(pattern.text());
+        }
+        return prepared.searchDistance(text, 0, text.length(), maxDistance);
+    }
+
+    /**
+     * Equivalent to calling {@code partialRatio(s1, s2, false)}.
+     */
+    public static int partialRatio(String s1, String s2) {
+        return partialRatio(s1, s2, false);
+    }
+
     /**
      * Returns similarity between {@code s1} and {@code s2} based on {@link #ratio(String, String, boolean)},
      * {@link #ratioToken(String, String, boolean)} and {@link #ratioTokenSet(String, String, boolean)}.
@@ -235,40 +557,176 @@ public class FuzzyStrings {
      */
     // returns similarity between s1 and s2 based on ratio(), ratioToken() and ratioTokenSet()
     public static int complexRatio(String s1, String s2, boolean ignoreCase) {
+        return complexRatio(s1, s2, ignoreCase, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #complexRatio(String, String, boolean)}, but only scores of at least {@code scoreCutoff} are
+     * of interest.
+     * @param s1 string to be compared with {@code s2}
+     * @param s2 string to be compared with {@code s1}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code (isInvalid(s1) == true || isInvalid(s2) == true)}
+     */
+    public static int complexRatio(String s1, String s2, boolean ignoreCase, int scoreCutoff) {
         if (s1.equals(s2)) {
-            return 100;
+            return cutoff(100, scoreCutoff);
         }
-        int simpleRatio = ratio(s1, s2, ignoreCase);
-        int tokenRatio = ratioToken(s1, s2, ignoreCase);
-        int tokenSetRatio = ratioTokenSet(s1, s2, ignoreCase);
-        float cRatio = (float) (simpleRatio + tokenRatio + tokenSetRatio) / 3;
+        validate(s1, s2);
+        PreparedString prepared1 = PreparedString.ofCandidate(s1, ignoreCase);
+        return complexRatio(prepared1, PreparedString.ofCandidate(s2, prepared1), scoreCutoff);
+    }
+
+    /**
+     * Same as {@link #complexRatio(String, String, boolean, int)}, but works with prepared strings. The tokens of
+     * each string are computed only once and shared by the token-based scores. If {@code scoreCutoff} is positive,
+     * the three scores are computed from the cheapest to the most expensive one, each with the cutoff it must reach
+     * for the average to still reach {@code scoreCutoff}, and the computation stops as soon as the average is known
+     * to fall short.
+     * @param s1 a prepared string to be compared with {@code s2}
+     * @param s2 a prepared string to be compared with {@code s1}
+     * @param scoreCutoff the minimum score of interest
+     * @return similarity between the two strings on the scale from 0 to 100, or {@code 0} if it is less than
+     *         {@code scoreCutoff}
+     * @throws IllegalArgumentException if only one of the two strings has been prepared to ignore differences in case
+     */
+    public static int complexRatio(PreparedString s1, PreparedString s2, int scoreCutoff) {
+        if (s1.getString().equals(s2.getString())) {
+            return cutoff(100, scoreCutoff);
+        }
+        if (scoreCutoff <= 0) {
+            int simpleRatio = ratio(s1, s2, Integer.MIN_VALUE);
+            int tokenRatio = ratioToken(s1, s2, Integer.MIN_VALUE);
+            int tokenSetRatio = ratioTokenSet(s1, s2, Integer.MIN_VALUE);
+            return cutoff(complexRatio(simpleRatio + tokenRatio + tokenSetRatio), scoreCutoff);
+        }
+        if (scoreCutoff > 100) {
+            return 0;
+        }
+        // no score exceeds 100, so each remaining score must make up for what the computed ones lack
+        int minimumSum = minimumComplexSum(scoreCutoff);
+        int tokenSetRatio = ratioTokenSet(s1, s2, Integer.MIN_VALUE);
+        int tokenCutoff = minimumSum - tokenSetRatio - 100;
+        if (tokenCutoff > 100) {
+            return 0;
+        }
+        int tokenRatio = ratioToken(s1, s2, pruningCutoff(tokenCutoff));
+        if (tokenRatio < tokenCutoff) {
+            return 0;
+        }
+        int simpleCutoff = minimumSum - tokenSetRatio - tokenRatio;
+        if (simpleCutoff > 100) {
+            return 0;
+        }
+        int simpleRatio = ratio(s1, s2, pruningCutoff(simpleCutoff));
+        if (simpleRatio < simpleCutoff) {
+            return 0;
+        }
+        return cutoff(complexRatio(simpleRatio + tokenRatio + tokenSetRatio), scoreCutoff);
+    }
+
+    /**
+     * Converts the sum of the three scores combined by {@code complexRatio()} into their rounded average.
+     */
+    private static int complexRatio(int sum) {
+        float cRatio = (float) sum / 3;
         return Math.round(cRatio);
     }
 
+    /**
+     * Returns the smallest sum of the three scores combined by {@code complexRatio()} whose average reaches
+     * {@code scoreCutoff}.
+     */
+    static int minimumComplexSum(int scoreCutoff) {
+        int sum = 3 * scoreCutoff - 2;
+        while (complexRatio(sum) < scoreCutoff) {
+            sum++;
+        }
+        while (complexRatio(sum - 1) >= scoreCutoff) {
+            sum--;
+        }
+        return sum;
+    }
+
     /**
      * Returns the best match for the specified string from a collection of candidates.
      * @param s a string to match against the collection of candidates
      * @param candidates a collection of strings to be matched against {@code s}
      * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional interface.
-     *                       {@code FuzzyStrings} provides four methods that can be passed to {@code matchOne()} and
+     *                       {@code FuzzyStrings} provides five methods that can be passed to {@code matchOne()} and
      *                       {@code matchAndSort()} methods: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
-     *                        {@code FuzzyStrings::ratioTokenSet} and {@code FuzzyStrings::complexRatio} as
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio} as
      *                        {@code compareFunction}
      * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
      * @return the best match for the specified string from a collection of candidates
      */
     public static StringMatch matchOne(String s, Collection<String> candidates,
                                        StringCompareFunction compareFunction, boolean ignoreCase) {
-        int bestRatio = -1;
-        String matchedString = "";
-        for (String candidate : candidates) {
-            int currentRatio = compareFunction.compare(s, candidate, ignoreCase);
-            if (currentRatio >= bestRatio) {
-                matchedString = candidate;
-                bestRatio = currentRatio;
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchOne");
+        try {
+            int bestRatio = -1;
+            String matchedString = "";
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int currentRatio = compareFunction.compare(s, candidate, ignoreCase);
+                if (stats != null) {
+                    stats.compared(time, currentRatio, true);
+                }
+                if (currentRatio >= bestRatio) {
+                    matchedString = candidate;
+                    bestRatio = currentRatio;
+                }
             }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the best match for the specified string from a collection of candidates, ignoring candidates whose
+     * score is less than {@code scoreCutoff}. As soon as a match is found, its score becomes the cutoff for the
+     * remaining candidates, so that they can be rejected as early as possible.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link BoundedStringCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match for the specified string from a collection of candidates, or a match with a score of
+     *         {@code -1} and empty text if no candidate reaches {@code scoreCutoff}
+     */
+    public static StringMatch matchOne(String s, Collection<String> candidates,
+                                       BoundedStringCompareFunction compareFunction, boolean ignoreCase,
+                                       int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchOne");
+        try {
+            int bestRatio = -1;
+            String matchedString = "";
+            int currentCutoff = scoreCutoff;
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int currentRatio = compareFunction.compare(s, candidate, ignoreCase, pruningCutoff(currentCutoff));
+                if (stats != null) {
+                    stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                }
+                if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                    matchedString = candidate;
+                    bestRatio = currentRatio;
+                    currentCutoff = Math.max(currentCutoff, currentRatio);
+                }
+            }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
         }
-        return new StringMatch(bestRatio, matchedString);
     }
 
     /**
@@ -276,21 +734,437 @@ public class FuzzyStrings {
      * @param s a string to match against the collection of candidates
      * @param candidates a collection of strings to be matched against {@code s}
      * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional interface.
-     *                       {@code FuzzyStrings} provides four methods that can be passed to {@code matchOne()} and
+     *                       {@code FuzzyStrings} provides five methods that can be passed to {@code matchOne()} and
      *                       {@code matchAndSort()}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
-     *                        {@code FuzzyStrings::ratioTokenSet} and {@code FuzzyStrings::complexRatio} as
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio} as
      *                        {@code compareFunction}
      * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
      * @return a {@link List} of {@link StringMatch} objects sorted by their score
      */
     public static List<StringMatch> matchAndSort(String s, Collection<String> candidates,
                                                  StringCompareFunction compareFunction, boolean ignoreCase) {
-        List<StringMatch> results = new ArrayList<>();
-        for (String candidate : candidates) {
-            int ratio = compareFunction.compare(s, candidate, ignoreCase);
-            results.add(new StringMatch(ratio, candidate));
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchAndSort");
+        try {
+            List<StringMatch> results = new ArrayList<>();
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(s, candidate, ignoreCase);
+                if (stats != null) {
+                    stats.compared(time, ratio, true);
+                }
+                results.add(new StringMatch(ratio, candidate));
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores all strings in a collection and returns a list of the matches whose score is at least
+     * {@code scoreCutoff}, sorted by score (in descending order).
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link BoundedStringCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     */
+    public static List<StringMatch> matchAndSort(String s, Collection<String> candidates,
+                                                 BoundedStringCompareFunction compareFunction, boolean ignoreCase,
+                                                 int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchAndSort");
+        try {
+            List<StringMatch> results = new ArrayList<>();
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(s, candidate, ignoreCase, pruningCutoff(scoreCutoff));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= scoreCutoff);
+                }
+                if (ratio >= scoreCutoff) {
+                    results.add(new StringMatch(ratio, candidate));
+                }
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the {@code k} best matches for the specified string from a collection of candidates, sorted by score
+     * (in descending order). Candidates with the same score keep the order of the collection, so the result is the
+     * same as the first {@code k} elements of the list returned by
+     * {@link #matchAndSort(String, Collection, StringCompareFunction, boolean)}. Only the current {@code k} best
+     * matches are kept while the candidates are scored, in a bounded heap, so the method needs {@code O(k)} memory
+     * and {@code O(n log k)} time for {@code n} candidates, and only creates {@code k} {@link StringMatch} objects.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public static List<StringMatch> matchTopK(String s, Collection<String> candidates, int k,
+                                              StringCompareFunction compareFunction, boolean ignoreCase) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchTopK");
+        try {
+            TopK<String> topK = new TopK<>(k);
+            int i = 0;
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(s, candidate, ignoreCase);
+                if (stats != null) {
+                    stats.compared(time, ratio, true);
+                }
+                topK.offer(ratio, i++, candidate);
+            }
+            return topMatches(topK);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Same as {@link #matchTopK(String, Collection, int, StringCompareFunction, boolean)}, but only returns matches
+     * whose score is at least {@code scoreCutoff}. Once {@code k} matches have been found, the score that a candidate
+     * needs to beat the worst of them becomes the cutoff passed to {@code compareFunction}, so that the remaining
+     * candidates can be rejected as early as possible.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link BoundedStringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public static List<StringMatch> matchTopK(String s, Collection<String> candidates, int k,
+                                              BoundedStringCompareFunction compareFunction, boolean ignoreCase,
+                                              int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchTopK");
+        try {
+            TopK<String> topK = new TopK<>(k);
+            int i = 0;
+            for (String candidate : candidates) {
+                int threshold = Math.max(topK.threshold(), scoreCutoff);
+                long time = stats == null ? 0 : System.nanoTime();
+                int ratio = compareFunction.compare(s, candidate, ignoreCase, pruningCutoff(threshold));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= threshold);
+                }
+                if (ratio >= threshold) {
+                    topK.offer(ratio, i, candidate);
+                }
+                i++;
+            }
+            return topMatches(topK);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Same as {@link #matchTopK(String, Collection, int, StringCompareFunction, boolean)}, but works with a prepared
+     * query.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code k} is negative or any of the candidates is invalid
+     */
+    public static List<StringMatch> matchTopK(PreparedString query, Collection<String> candidates, int k,
+                                              PreparedCompareFunction compareFunction) {
+        return matchTopK(query, candidates, k, compareFunction, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #matchTopK(String, Collection, int, BoundedStringCompareFunction, boolean, int)}, but works
+     * with a prepared query.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param k the maximum number of matches to return
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of at most {@code k} {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code k} is negative or any of the candidates is invalid
+     */
+    public static List<StringMatch> matchTopK(PreparedString query, Collection<String> candidates, int k,
+                                              PreparedCompareFunction compareFunction, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchTopK");
+        try {
+            TopK<String> topK = new TopK<>(k);
+            int i = 0;
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                validate(candidate);
+                int threshold = Math.max(topK.threshold(), scoreCutoff);
+                PreparedString preparedCandidate = PreparedString.ofCandidate(candidate, query);
+                if (stats != null) {
+                    time = stats.normalized(time);
+                }
+                int ratio = compareFunction.compare(query, preparedCandidate, pruningCutoff(threshold));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= threshold);
+                }
+                if (ratio >= threshold) {
+                    topK.offer(ratio, i, candidate);
+                }
+                i++;
+            }
+            return topMatches(topK);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    // returns the matches collected by topK, best first
+    private static List<StringMatch> topMatches(TopK<String> topK) {
+        int count = topK.drain().length;
+        List<StringMatch> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new StringMatch(topK.score(i), topK.item(i)));
         }
-        results.sort(Collections.reverseOrder());
         return results;
     }
+
+    /**
+     * Same as {@link #matchOne(String, Collection, StringCompareFunction, boolean)}, but scores the candidates in
+     * parallel in the {@linkplain ForkJoinPool#commonPool() common pool}.
+     * See {@link #parallelMatchOne(String, Collection, StringCompareFunction, boolean, ForkJoinPool)}.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return the best match for the specified string from a collection of candidates
+     */
+    public static StringMatch parallelMatchOne(String s, Collection<String> candidates,
+                                               StringCompareFunction compareFunction, boolean ignoreCase) {
+        return parallelMatchOne(s, candidates, compareFunction, ignoreCase, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #matchOne(String, Collection, StringCompareFunction, boolean)}, but scores the candidates in
+     * parallel in the specified pool. The candidates are split into chunks that are scored independently, and the
+     * best matches of the chunks are merged in the order of the collection, so the result is the same as the one of
+     * {@code matchOne()}, including which of several candidates with the best score is returned. Collections with
+     * fewer than a few thousand candidates are scored on the calling thread. {@code compareFunction} must be safe to
+     * call from several threads at once, which the compare functions of this class are. The statistics reported to
+     * the {@link MatchListener} are the same as the ones of {@code matchOne()}.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param pool the pool that scores the candidates
+     * @return the best match for the specified string from a collection of candidates
+     */
+    public static StringMatch parallelMatchOne(String s, Collection<String> candidates,
+                                               StringCompareFunction compareFunction, boolean ignoreCase,
+                                               ForkJoinPool pool) {
+        if (candidates.size() < ParallelMatch.SEQUENTIAL_THRESHOLD) {
+            return matchOne(s, candidates, compareFunction, ignoreCase);
+        }
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchOne");
+        try {
+            String[] array = candidates.toArray(new String[0]);
+            ParallelMatch.Best best = ParallelMatch.best(array.length,
+                    i -> compareFunction.compare(s, array[i], ignoreCase), pool, stats);
+            return new StringMatch(best.score, best.position < 0 ? "" : array[best.position]);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Same as {@link #matchAndSort(String, Collection, StringCompareFunction, boolean)}, but scores the candidates
+     * in parallel in the {@linkplain ForkJoinPool#commonPool() common pool}.
+     * See {@link #parallelMatchAndSort(String, Collection, StringCompareFunction, boolean, ForkJoinPool)}.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     */
+    public static List<StringMatch> parallelMatchAndSort(String s, Collection<String> candidates,
+                                                         StringCompareFunction compareFunction, boolean ignoreCase) {
+        return parallelMatchAndSort(s, candidates, compareFunction, ignoreCase, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #matchAndSort(String, Collection, StringCompareFunction, boolean)}, but scores and sorts the
+     * candidates in parallel in the specified pool. The sort is stable, so matches with the same score keep the
+     * order of the collection and the result is the same as the one of {@code matchAndSort()}. Collections with
+     * fewer than a few thousand candidates are scored on the calling thread. {@code compareFunction} must be safe to
+     * call from several threads at once, which the compare functions of this class are. The statistics reported to
+     * the {@link MatchListener} are the same as the ones of {@code matchAndSort()}.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @param pool the pool that scores and sorts the candidates
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     */
+    public static List<StringMatch> parallelMatchAndSort(String s, Collection<String> candidates,
+                                                         StringCompareFunction compareFunction, boolean ignoreCase,
+                                                         ForkJoinPool pool) {
+        if (candidates.size() < ParallelMatch.SEQUENTIAL_THRESHOLD) {
+            return matchAndSort(s, candidates, compareFunction, ignoreCase);
+        }
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchAndSort");
+        try {
+            String[] array = candidates.toArray(new String[0]);
+            int[] scores = ParallelMatch.scores(array.length,
+                    i -> compareFunction.compare(s, array[i], ignoreCase), pool, stats);
+            StringMatch[] matches = new StringMatch[array.length];
+            for (int i = 0; i < array.length; i++) {
+                matches[i] = new StringMatch(scores[i], array[i]);
+            }
+            // Arrays.parallelSort() forks its tasks in the pool of the calling thread, so call it from the specified
+            // pool
+            pool.submit(() -> Arrays.parallelSort(matches, Collections.reverseOrder())).join();
+            return new ArrayList<>(Arrays.asList(matches));
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Returns the best match for the specified prepared query from a collection of candidates. The query is only
+     * normalized once, no matter how many candidates it is compared to. Candidates with the same score are
+     * resolved in the same way as by {@link #matchOne(String, Collection, StringCompareFunction, boolean)}.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @return the best match for the specified query from a collection of candidates
+     * @throws IllegalArgumentException if any of the candidates is invalid
+     */
+    public static StringMatch matchOne(PreparedString query, Collection<String> candidates,
+                                       PreparedCompareFunction compareFunction) {
+        return matchOne(query, candidates, compareFunction, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #matchOne(PreparedString, Collection, PreparedCompareFunction)}, but ignores candidates whose
+     * score is less than {@code scoreCutoff}. As soon as a match is found, its score becomes the cutoff for the
+     * remaining candidates.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match for the specified query from a collection of candidates, or a match with a score of
+     *         {@code -1} and empty text if no candidate reaches {@code scoreCutoff}
+     * @throws IllegalArgumentException if any of the candidates is invalid
+     */
+    public static StringMatch matchOne(PreparedString query, Collection<String> candidates,
+                                       PreparedCompareFunction compareFunction, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchOne");
+        try {
+            int bestRatio = -1;
+            String matchedString = "";
+            int currentCutoff = scoreCutoff;
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                validate(candidate);
+                PreparedString preparedCandidate = PreparedString.ofCandidate(candidate, query);
+                if (stats != null) {
+                    time = stats.normalized(time);
+                }
+                int currentRatio = compareFunction.compare(query, preparedCandidate, pruningCutoff(currentCutoff));
+                if (stats != null) {
+                    stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                }
+                if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                    matchedString = candidate;
+                    bestRatio = currentRatio;
+                    currentCutoff = Math.max(currentCutoff, currentRatio);
+                }
+            }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores all strings in a collection against the specified prepared query and returns a list of matches sorted
+     * by score (in descending order). The query is only normalized once, no matter how many candidates it is compared
+     * to.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface. {@code FuzzyStrings} provides five methods that can be used as
+     *                        {@code compareFunction}: {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken},
+     *                        {@code FuzzyStrings::ratioTokenSet}, {@code FuzzyStrings::partialRatio} and
+     *                        {@code FuzzyStrings::complexRatio}
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if any of the candidates is invalid
+     */
+    public static List<StringMatch> matchAndSort(PreparedString query, Collection<String> candidates,
+                                                 PreparedCompareFunction compareFunction) {
+        return matchAndSort(query, candidates, compareFunction, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #matchAndSort(PreparedString, Collection, PreparedCompareFunction)}, but only returns the
+     * matches whose score is at least {@code scoreCutoff}.
+     * @param query a prepared string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code query}
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if any of the candidates is invalid
+     */
+    public static List<StringMatch> matchAndSort(PreparedString query, Collection<String> candidates,
+                                                 PreparedCompareFunction compareFunction, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("FuzzyStrings.matchAndSort");
+        try {
+            List<StringMatch> results = new ArrayList<>();
+            for (String candidate : candidates) {
+                long time = stats == null ? 0 : System.nanoTime();
+                validate(candidate);
+                PreparedString preparedCandidate = PreparedString.ofCandidate(candidate, query);
+                if (stats != null) {
+                    time = stats.normalized(time);
+                }
+                int ratio = compareFunction.compare(query, preparedCandidate, pruningCutoff(scoreCutoff));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= scoreCutoff);
+                }
+                if (ratio >= scoreCutoff) {
+                    results.add(new StringMatch(ratio, candidate));
+                }
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
 }
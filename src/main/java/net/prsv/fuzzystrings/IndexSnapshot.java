@@ -0,0 +1,187 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The binary format of a saved {@link FuzzyIndex}. A snapshot holds everything the index has computed from its
+ * candidates, so that opening it does not normalize or tokenize anything:
+ * <ul>
+ *     <li>a header: the magic number {@code "FZIX"}, the format version, the number of tokens in the dictionary and
+ *     the number of candidates;</li>
+ *     <li>the tokens of the dictionary, ordered by their IDs;</li>
+ *     <li>for each candidate: the original string, its token IDs and token set, and a flag telling whether the
+ *     candidate is the same when differences in case are ignored; if it is not, the candidate converted to
+ *     lowercase, its token IDs and its token set follow;</li>
+ *     <li>the CRC-32 checksum of everything before it.</li>
+ * </ul>
+ * All numbers are big-endian. Strings are stored as their length followed by their UTF-16 code units, and arrays of
+ * token IDs as their length followed by the IDs. Snapshots are read from a memory-mapped file and are therefore
+ * limited to {@code Integer.MAX_VALUE} bytes.
+ */
+final class IndexSnapshot {
+
+    private static final int MAGIC = 0x465A4958;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 8;
+
+    final PreparedString[] candidates;
+    final PreparedString[] candidatesIgnoreCase;
+    final TokenDictionary dictionary;
+
+    private IndexSnapshot(PreparedString[] candidates, PreparedString[] candidatesIgnoreCase,
+                          TokenDictionary dictionary) {
+        this.candidates = candidates;
+        this.candidatesIgnoreCase = candidatesIgnoreCase;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Writes a snapshot of an index to the specified file, replacing the file if it exists.
+     * @param file the file
+     * @param candidates the candidates of the index
+     * @param candidatesIgnoreCase the candidates of the index that ignore differences in case
+     * @param dictionary the dictionary of the index
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(Path file, PreparedString[] candidates, PreparedString[] candidatesIgnoreCase,
+                      TokenDictionary dictionary) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16), checksum))) {
+            String[] tokens = dictionary.tokens();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tokens.length);
+            out.writeInt(candidates.length);
+            for (String token : tokens) {
+                writeString(out, token);
+            }
+            for (int i = 0; i < candidates.length; i++) {
+                PreparedString candidate = candidates[i];
+                PreparedString ignoreCase = candidatesIgnoreCase[i];
+                writeString(out, candidate.getString());
+                writeIds(out, candidate.tokenIds());
+                writeIds(out, candidate.tokenSet());
+                boolean same = ignoreCase.text().equals(candidate.text())
+                        && Arrays.equals(ignoreCase.tokenIds(), candidate.tokenIds())
+                        && Arrays.equals(ignoreCase.tokenSet(), candidate.tokenSet());
+                out.writeBoolean(same);
+                if (!same) {
+                    writeString(out, ignoreCase.text());
+                    writeIds(out, ignoreCase.tokenIds());
+                    writeIds(out, ignoreCase.tokenSet());
+                }
+            }
+            out.writeLong(checksum.getValue());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static void writeIds(DataOutputStream out, int[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    /**
+     * Reads a snapshot from the specified file, after checking its format version and its checksum.
+     * @param file the file
+     * @return the contents of the snapshot
+     * @throws IOException if an I/O error occurs, or the file is not a snapshot, has been written in another version
+     *                     of the format, or is corrupted
+     */
+    static IndexSnapshot read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to be mapped: " + size + " bytes.");
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not an index snapshot: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an index snapshot: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported index snapshot version " + version + ", expected " + VERSION + ".");
+        }
+        int end = buffer.limit() - TRAILER_SIZE;
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate().limit(end));
+        if (checksum.getValue() != buffer.getLong(end)) {
+            throw new IOException("Index snapshot is corrupted: checksum mismatch.");
+        }
+        try {
+            buffer.position(8).limit(end);
+            String[] tokens = new String[buffer.getInt()];
+            int n = buffer.getInt();
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = readString(buffer);
+            }
+            TokenDictionary dictionary = TokenDictionary.of(tokens);
+            PreparedString[] candidates = new PreparedString[n];
+            PreparedString[] candidatesIgnoreCase = new PreparedString[n];
+            for (int i = 0; i < n; i++) {
+                String s = readString(buffer);
+                int[] tokenIds = readIds(buffer);
+                int[] tokenSet = readIds(buffer);
+                candidates[i] = PreparedString.restore(s, false, s, dictionary, tokenIds, tokenSet);
+                if (buffer.get() != 0) {
+                    candidatesIgnoreCase[i] = PreparedString.restore(s, true, s, dictionary, tokenIds, tokenSet);
+                } else {
+                    String text = readString(buffer);
+                    candidatesIgnoreCase[i] = PreparedString.restore(s, true, text, dictionary, readIds(buffer),
+                            readIds(buffer));
+                }
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Index snapshot is corrupted: unexpected data after the candidates.");
+            }
+            return new IndexSnapshot(candidates, candidatesIgnoreCase, dictionary);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            // a valid checksum over invalid contents means the file has been written by something else
+            throw new IOException("Index snapshot is corrupted.", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getInt()];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + 2 * chars.length);
+        return new String(chars);
+    }
+
+    private static int[] readIds(ByteBuffer buffer) {
+        int[] ids = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(ids);
+        buffer.position(buffer.position() + 4 * ids.length);
+        return ids;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * A list of matches that refer to their candidates by position instead of holding the matched strings, stored as
+ * two parallel arrays rather than as one object per match. Returned by {@link CandidateArena}.
+ */
+public final class IndexedMatches {
+
+    private final int[] indices;
+    private final int[] scores;
+    private final int size;
+
+    IndexedMatches(int[] indices, int[] scores, int size) {
+        this.indices = indices;
+        this.scores = scores;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of matches.
+     * @return the number of matches
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of the candidate of the specified match.
+     * @param match the position of the match in this list
+     * @return the position of the matched candidate
+     * @throws IndexOutOfBoundsException if {@code match} is out of range
+     */
+    public int getIndex(int match) {
+        return indices[checkIndex(match)];
+    }
+
+    /**
+     * Returns the score of the specified match.
+     * @param match the position of the match in this list
+     * @return the score of the match
+     * @throws IndexOutOfBoundsException if {@code match} is out of range
+     */
+    public int getScore(int match) {
+        return scores[checkIndex(match)];
+    }
+
+    private int checkIndex(int match) {
+        if (match < 0 || match >= size) {
+            throw new IndexOutOfBoundsException("Index " + match + " out of bounds for length " + size);
+        }
+        return match;
+    }
+}
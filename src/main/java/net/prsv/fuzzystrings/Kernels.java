@@ -0,0 +1,89 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * The innermost loops of the scorers that can be vectorized. This class holds the scalar implementations, which run
+ * on any Java version. The multi-release JAR also ships {@code VectorKernels}, a subclass compiled for Java 17 that
+ * implements the same methods with the incubating Vector API ({@code jdk.incubator.vector}); it is used instead of
+ * this class if it can be loaded, i.e. on Java 17 or later with {@code --add-modules jdk.incubator.vector}. Both
+ * return identical results.
+ * <p>
+ * Setting the system property {@code net.prsv.fuzzystrings.vector} to {@code false} disables the vectorized kernels.
+ * Instances are immutable and can be shared between threads.
+ */
+class Kernels {
+
+    /**
+     * The kernels in use.
+     */
+    static final Kernels INSTANCE = load();
+
+    private static Kernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("net.prsv.fuzzystrings.vector", "true"))) {
+            return new Kernels();
+        }
+        try {
+            return (Kernels) Class.forName("net.prsv.fuzzystrings.VectorKernels").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // older Java version, or the incubator module has not been added
+            return new Kernels();
+        }
+    }
+
+    /**
+     * Computes the Levenshtein distances between a pattern and several ranges of a text, like
+     * {@link LevenshteinPattern#distance(CharSequence, int, int, int)} does for each range.
+     * @param pattern the pattern
+     * @param text the text
+     * @param from the indices of the first characters of the ranges
+     * @param to the indices after the last characters of the ranges
+     * @param maxDistances the maximum distances of interest
+     * @param count the number of ranges
+     * @param distances receives the distances, or {@code maxDistances[i] + 1} where the distance is greater than
+     *                  {@code maxDistances[i]}
+     */
+    void distances(LevenshteinPattern pattern, CharSequence text, int[] from, int[] to, int[] maxDistances,
+                   int count, int[] distances) {
+        for (int i = 0; i < count; i++) {
+            distances[i] = pattern.distance(text, from[i], to[i], maxDistances[i]);
+        }
+    }
+
+    /**
+     * Returns the number of values two arrays sorted in ascending order and without duplicates have in common.
+     * @param set1 a sorted array without duplicates
+     * @param set2 a sorted array without duplicates
+     * @return the number of common values
+     */
+    int countCommon(int[] set1, int[] set2) {
+        return countCommon(set1, 0, set2, 0);
+    }
+
+    /**
+     * Same as {@link #countCommon(int[], int[])}, for the values from {@code set1[from1]} and {@code set2[from2]}
+     * on.
+     */
+    static int countCommon(int[] set1, int from1, int[] set2, int from2) {
+        int common = 0;
+        int i = from1;
+        int j = from2;
+        while (i < set1.length && j < set2.length) {
+            if (set1[i] < set2[j]) {
+                i++;
+            } else if (set1[i] > set2[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+}
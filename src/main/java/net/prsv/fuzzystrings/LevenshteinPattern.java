@@ -0,0 +1,465 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.Arrays;
+
+/**
+ * A pattern string pre-processed for the bit-parallel Levenshtein distance algorithm by G. Myers
+ * ("A fast bit-vector algorithm for approximate string matching based on dynamic programming", 1999),
+ * in the formulation by H. Hyyrö ("A bit-vector algorithm for computing Levenshtein and Damerau edit distances",
+ * 2003). Patterns of up to 64 characters fit into a single machine word; longer patterns are split into blocks
+ * of 64 characters, and the blocks are chained together by propagating the horizontal delta of the bottom row
+ * of each block into the next one.
+ * <p>
+ * The distance is computed in {@code O(n * ceil(m / 64))} word operations and {@code O(ceil(m / 64))} memory,
+ * where {@code m} is the length of the pattern and {@code n} is the length of the text.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+final class LevenshteinPattern {
+
+    private static final int ASCII_SIZE = 128;
+
+    private final CharSequence source;
+    private final int sourceFrom;
+    private final int length;
+    private final int blocks;
+    // match masks for ASCII characters, indexed by character * blocks + block
+    private final long[] asciiMasks;
+    // open-addressing table for all other characters; a key of 0 marks an empty slot, other keys are char + 1
+    private final int[] keys;
+    private final long[] masks;
+    private final int tableMask;
+
+    /**
+     * Pre-processes the specified pattern.
+     * @param pattern the pattern
+     */
+    LevenshteinPattern(CharSequence pattern) {
+        this(pattern, 0, pattern.length());
+    }
+
+    /**
+     * Pre-processes the characters of {@code pattern} between {@code from} (inclusive) and {@code to} (exclusive).
+     * @param pattern the pattern
+     * @param from the index of the first character of the pattern
+     * @param to the index after the last character of the pattern
+     */
+    LevenshteinPattern(CharSequence pattern, int from, int to) {
+        source = pattern;
+        sourceFrom = from;
+        length = to - from;
+        blocks = Math.max(1, (length + 63) >>> 6);
+        asciiMasks = new long[ASCII_SIZE * blocks];
+        int nonAscii = 0;
+        for (int i = from; i < to; i++) {
+            if (pattern.charAt(i) >= ASCII_SIZE) {
+                nonAscii++;
+            }
+        }
+        int tableSize = nonAscii == 0 ? 1 : Integer.highestOneBit(nonAscii * 2 - 1) << 1;
+        keys = new int[tableSize];
+        masks = new long[tableSize * blocks];
+        tableMask = tableSize - 1;
+        for (int i = from; i < to; i++) {
+            char c = pattern.charAt(i);
+            int position = i - from;
+            int block = position >>> 6;
+            long bit = 1L << (position & 63);
+            if (c < ASCII_SIZE) {
+                asciiMasks[c * blocks + block] |= bit;
+            } else {
+                int slot = hash(c) & tableMask;
+                while (keys[slot] != 0 && keys[slot] != c + 1) {
+                    slot = (slot + 1) & tableMask;
+                }
+                keys[slot] = c + 1;
+                masks[slot * blocks + block] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the pattern.
+     * @return the length of the pattern
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the Levenshtein distance between the pattern and {@code text}.
+     * @param text the text
+     * @return the Levenshtein distance between the pattern and {@code text}
+     */
+    int distance(CharSequence text) {
+        return distance(text, 0, text.length(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the Levenshtein distance between the pattern and the characters of {@code text} between
+     * {@code from} (inclusive) and {@code to} (exclusive), or {@code maxDistance + 1} if the distance is greater
+     * than {@code maxDistance}. The computation stops as soon as the distance in the last row of the matrix can no
+     * longer drop to {@code maxDistance} in the remaining columns.
+     * @param text the text
+     * @param from the index of the first character of the text
+     * @param to the index after the last character of the text
+     * @param maxDistance the maximum distance of interest
+     * @return the Levenshtein distance between the pattern and the specified part of {@code text},
+     *         or {@code maxDistance + 1} if it is greater than {@code maxDistance}
+     */
+    int distance(CharSequence text, int from, int to, int maxDistance) {
+        // the distance never exceeds the length of the longer string, which also keeps maxDistance + 1 from overflowing
+        maxDistance = Math.min(maxDistance, Math.max(length, to - from));
+        if (Math.abs(length - (to - from)) > maxDistance) {
+            return maxDistance + 1;
+        }
+        if (length == 0) {
+            return to - from;
+        }
+        if (blocks == 1) {
+            return distanceSingleWord(text, from, to, maxDistance);
+        }
+        if (useBand(length, maxDistance)) {
+            return bandedDistance(source, sourceFrom, sourceFrom + length, text, from, to, maxDistance);
+        }
+        return distanceMultiWord(text, from, to, maxDistance);
+    }
+
+    private int distanceSingleWord(CharSequence text, int from, int to, int maxDistance) {
+        long vp = -1L;
+        long vn = 0L;
+        long last = 1L << (length - 1);
+        int score = length;
+        for (int i = from; i < to; i++) {
+            long eq = mask(text.charAt(i), 0);
+            long xv = eq | vn;
+            long xh = (((eq & vp) + vp) ^ vp) | eq;
+            long hp = vn | ~(xh | vp);
+            long hn = vp & xh;
+            if ((hp & last) != 0) {
+                score++;
+            } else if ((hn & last) != 0) {
+                score--;
+            }
+            // every remaining column can lower the distance by at most one
+            if (score - (to - i - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+            // the top row of the matrix grows by one in every column, hence the carried-in 1
+            hp = (hp << 1) | 1L;
+            hn = hn << 1;
+            vp = hn | ~(xv | hp);
+            vn = hp & xv;
+        }
+        return score;
+    }
+
+    private int distanceMultiWord(CharSequence text, int from, int to, int maxDistance) {
+        long[] vp = new long[blocks];
+        long[] vn = new long[blocks];
+        Arrays.fill(vp, -1L);
+        int lastBlock = blocks - 1;
+        long lastBit = 1L << ((length - 1) & 63);
+        int score = length;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            // horizontal delta carried into the top of the current block: +1, 0 or -1
+            int carry = 1;
+            for (int block = 0; block < blocks; block++) {
+                long pv = vp[block];
+                long mv = vn[block];
+                long eq = mask(c, block);
+                long xv = eq | mv;
+                if (carry < 0) {
+                    eq |= 1L;
+                }
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long hp = mv | ~(xh | pv);
+                long hn = pv & xh;
+                long outBit = block == lastBlock ? lastBit : 0x8000000000000000L;
+                int out = 0;
+                if ((hp & outBit) != 0) {
+                    out = 1;
+                } else if ((hn & outBit) != 0) {
+                    out = -1;
+                }
+                hp <<= 1;
+                hn <<= 1;
+                if (carry < 0) {
+                    hn |= 1L;
+                } else if (carry > 0) {
+                    hp |= 1L;
+                }
+                vp[block] = hn | ~(xv | hp);
+                vn[block] = hp & xv;
+                carry = out;
+            }
+            score += carry;
+            if (score - (to - i - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Returns the smallest Levenshtein distance between the pattern and any substring of the characters of
+     * {@code text} between {@code from} (inclusive) and {@code to} (exclusive), i.e. the semi-global alignment
+     * distance in which skipping characters at the start and at the end of the text is free. Returns
+     * {@code maxDistance + 1} if the distance is greater than {@code maxDistance}. The same bit-parallel algorithm as
+     * {@link #distance(CharSequence, int, int, int)} computes it in a single pass over the text: the top row of the
+     * matrix is all zeros instead of growing by one in every column, and the result is the minimum of the last row
+     * rather than its last value.
+     * @param text the text
+     * @param from the index of the first character of the text
+     * @param to the index after the last character of the text
+     * @param maxDistance the maximum distance of interest
+     * @return the smallest distance between the pattern and a substring of the specified part of {@code text},
+     *         or {@code maxDistance + 1} if it is greater than {@code maxDistance}
+     */
+    int searchDistance(CharSequence text, int from, int to, int maxDistance) {
+        // aligning the pattern with the empty substring costs its length
+        maxDistance = Math.min(maxDistance, length);
+        if (maxDistance < 0) {
+            return maxDistance + 1;
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (blocks == 1) {
+            return searchSingleWord(text, from, to, maxDistance);
+        }
+        return searchMultiWord(text, from, to, maxDistance);
+    }
+
+    private int searchSingleWord(CharSequence text, int from, int to, int maxDistance) {
+        long vp = -1L;
+        long vn = 0L;
+        long last = 1L << (length - 1);
+        int score = length;
+        int best = length;
+        for (int i = from; i < to && best > 0; i++) {
+            long eq = mask(text.charAt(i), 0);
+            long xv = eq | vn;
+            long xh = (((eq & vp) + vp) ^ vp) | eq;
+            long hp = vn | ~(xh | vp);
+            long hn = vp & xh;
+            if ((hp & last) != 0) {
+                score++;
+            } else if ((hn & last) != 0) {
+                score--;
+            }
+            best = Math.min(best, score);
+            // the last row can drop by at most one per remaining column
+            if (best > maxDistance && score - (to - i - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+            // the top row is all zeros, so nothing is carried in
+            hp <<= 1;
+            hn <<= 1;
+            vp = hn | ~(xv | hp);
+            vn = hp & xv;
+        }
+        return best > maxDistance ? maxDistance + 1 : best;
+    }
+
+    private int searchMultiWord(CharSequence text, int from, int to, int maxDistance) {
+        long[] vp = new long[blocks];
+        long[] vn = new long[blocks];
+        Arrays.fill(vp, -1L);
+        int lastBlock = blocks - 1;
+        long lastBit = 1L << ((length - 1) & 63);
+        int score = length;
+        int best = length;
+        for (int i = from; i < to && best > 0; i++) {
+            char c = text.charAt(i);
+            int carry = 0;
+            for (int block = 0; block < blocks; block++) {
+                long pv = vp[block];
+                long mv = vn[block];
+                long eq = mask(c, block);
+                long xv = eq | mv;
+                if (carry < 0) {
+                    eq |= 1L;
+                }
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long hp = mv | ~(xh | pv);
+                long hn = pv & xh;
+                long outBit = block == lastBlock ? lastBit : 0x8000000000000000L;
+                int out = 0;
+                if ((hp & outBit) != 0) {
+                    out = 1;
+                } else if ((hn & outBit) != 0) {
+                    out = -1;
+                }
+                hp <<= 1;
+                hn <<= 1;
+                if (carry < 0) {
+                    hn |= 1L;
+                } else if (carry > 0) {
+                    hp |= 1L;
+                }
+                vp[block] = hn | ~(xv | hp);
+                vn[block] = hp & xv;
+                carry = out;
+            }
+            score += carry;
+            best = Math.min(best, score);
+            if (best > maxDistance && score - (to - i - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+        return best > maxDistance ? maxDistance + 1 : best;
+    }
+
+    /**
+     * Returns the match mask of the specified character for the specified block of 64 pattern characters: bit
+     * {@code i} is set if the character at position {@code 64 * block + i} of the pattern is {@code c}.
+     */
+    long mask(char c, int block) {
+        if (c < ASCII_SIZE) {
+            return asciiMasks[c * blocks + block];
+        }
+        int slot = hash(c) & tableMask;
+        int key = c + 1;
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return masks[slot * blocks + block];
+            }
+            if (k == 0) {
+                return 0L;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    private static int hash(char c) {
+        int h = c * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the Levenshtein distance between {@code s1} and {@code s2}. The common prefix and suffix of the
+     * two strings are skipped, and the shorter of the remaining parts is used as the pattern.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @return the Levenshtein distance between the two strings
+     */
+    static int distance(CharSequence s1, CharSequence s2) {
+        return distance(s1, s2, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the Levenshtein distance between {@code s1} and {@code s2}, or {@code maxDistance + 1} if the
+     * distance is greater than {@code maxDistance}.
+     * <p>
+     * Pairs whose lengths differ by more than {@code maxDistance} are rejected without looking at their characters.
+     * When the band of diagonals that can still hold a distance of at most {@code maxDistance} is narrow compared to
+     * the length of the pattern, the distance is computed by {@link #bandedDistance}; otherwise the bit-parallel
+     * kernel is used.
+     * @param s1 a string to be compared with {@code s2}
+     * @param s2 a string to be compared with {@code s1}
+     * @param maxDistance the maximum distance of interest
+     * @return the Levenshtein distance between the two strings, or {@code maxDistance + 1} if it is greater
+     *         than {@code maxDistance}
+     */
+    static int distance(CharSequence s1, CharSequence s2, int maxDistance) {
+        int end1 = s1.length();
+        int end2 = s2.length();
+        maxDistance = Math.min(maxDistance, Math.max(end1, end2));
+        if (Math.abs(end1 - end2) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int start = 0;
+        while (start < end1 && start < end2 && s1.charAt(start) == s2.charAt(start)) {
+            start++;
+        }
+        while (end1 > start && end2 > start && s1.charAt(end1 - 1) == s2.charAt(end2 - 1)) {
+            end1--;
+            end2--;
+        }
+        if (end1 - start > end2 - start) {
+            CharSequence s = s1;
+            s1 = s2;
+            s2 = s;
+            int end = end1;
+            end1 = end2;
+            end2 = end;
+        }
+        // s1 is now the shorter of the two strings
+        int patternLength = end1 - start;
+        if (patternLength == 0) {
+            return Math.min(end2 - start, maxDistance + 1);
+        }
+        if (useBand(patternLength, maxDistance)) {
+            return bandedDistance(s1, start, end1, s2, start, end2, maxDistance);
+        }
+        return new LevenshteinPattern(s1, start, end1).distance(s2, start, end2, maxDistance);
+    }
+
+    // rough number of banded DP cells that cost as much as one block step of the bit-parallel kernel
+    private static final int BAND_CELLS_PER_BLOCK = 8;
+
+    /**
+     * Returns {@code true} if the banded algorithm is expected to be faster than the bit-parallel one for a pattern
+     * of the specified length. Patterns that fit into a single word always use the bit-parallel algorithm.
+     */
+    private static boolean useBand(int patternLength, int maxDistance) {
+        return patternLength > 64 && 2L * maxDistance + 1 <= BAND_CELLS_PER_BLOCK * ((patternLength + 63) >>> 6);
+    }
+
+    /**
+     * Computes the Levenshtein distance between two character ranges with the banded dynamic programming
+     * algorithm by E. Ukkonen ("Algorithms for approximate string matching", 1985): only the cells at most
+     * {@code maxDistance} diagonals away from the main diagonal are computed, and the computation stops as soon as
+     * the minimum of a row exceeds {@code maxDistance}.
+     * @return the Levenshtein distance, or {@code maxDistance + 1} if it is greater than {@code maxDistance}
+     */
+    private static int bandedDistance(CharSequence s1, int from1, int to1, CharSequence s2, int from2, int to2,
+                                      int maxDistance) {
+        int rows = to1 - from1;
+        int columns = to2 - from2;
+        int outside = maxDistance + 1;
+        // row[j] holds the distance between the first i characters of s1 and the first j characters of s2
+        int[] row = new int[columns + 1];
+        for (int j = 0; j <= columns; j++) {
+            row[j] = Math.min(j, outside);
+        }
+        for (int i = 1; i <= rows; i++) {
+            int low = Math.max(1, i - maxDistance);
+            int high = Math.min(columns, i + maxDistance);
+            int diagonal = row[low - 1];
+            int left = low == 1 ? Math.min(i, outside) : outside;
+            row[low - 1] = left;
+            int rowMinimum = left;
+            char c = s1.charAt(from1 + i - 1);
+            for (int j = low; j <= high; j++) {
+                int up = row[j];
+                int value = diagonal + (c == s2.charAt(from2 + j - 1) ? 0 : 1);
+                if (up + 1 < value) {
+                    value = up + 1;
+                }
+                if (left + 1 < value) {
+                    value = left + 1;
+                }
+                diagonal = up;
+                row[j] = value;
+                left = value;
+                if (value < rowMinimum) {
+                    rowMinimum = value;
+                }
+            }
+            if (rowMinimum > maxDistance) {
+                return outside;
+            }
+        }
+        return Math.min(row[columns], outside);
+    }
+}
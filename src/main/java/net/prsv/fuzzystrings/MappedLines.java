@@ -0,0 +1,116 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a UTF-8 text file through a window that is memory-mapped from the file and moved forward as
+ * the lines are read, so files of any size can be read with a bounded amount of memory and without copying the
+ * contents of the file into a buffer first. Lines end with {@code "\n"} or {@code "\r\n"}; a byte order mark at the
+ * start of the file is skipped, and malformed input is replaced with {@code U+FFFD}. Instances are not thread-safe.
+ */
+final class MappedLines implements Closeable {
+
+    /**
+     * The size of the window unless a line is longer than that.
+     */
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private int windowSize;
+    private ByteBuffer window;
+    // the position of the window in the file
+    private long windowStart;
+    // the position of the next line in the file
+    private long position;
+    private byte[] bytes = new byte[256];
+
+    MappedLines(Path file) throws IOException {
+        this(file, WINDOW_SIZE);
+    }
+
+    MappedLines(Path file, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        if (fileSize >= 3) {
+            map(0);
+            if (window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+                position = 3;
+            }
+        }
+    }
+
+    /**
+     * Returns the next line, without the line terminator.
+     * @return the next line, or {@code null} if the end of the file has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    String next() throws IOException {
+        if (position >= fileSize) {
+            return null;
+        }
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            int from = (int) (position - windowStart);
+            int limit = window.limit();
+            int end = from;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            boolean lastLine = windowStart + limit == fileSize;
+            if (end < limit || lastLine) {
+                position = windowStart + end + 1;
+                if (end > from && window.get(end - 1) == '\r') {
+                    end--;
+                }
+                return decode(from, end);
+            }
+            // the line continues past the window; if it started at the beginning of the window, the window is too
+            // small to hold it
+            if (from == 0) {
+                if (windowSize == Integer.MAX_VALUE) {
+                    throw new IOException("Line too long at position " + position + ".");
+                }
+                windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+            }
+            map(position);
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+        }
+        ByteBuffer view = window.duplicate();
+        view.position(from);
+        view.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
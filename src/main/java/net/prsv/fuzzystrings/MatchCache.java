@@ -0,0 +1,393 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the results of {@code matchOne()} and {@code matchAndSort()}, for workloads where the same
+ * queries are matched against the same candidates over and over again. A cached result is returned without
+ * comparing the query with any candidate.
+ * <p>
+ * A result is cached under the query, the compare function, {@code ignoreCase} and the candidates. If differences in
+ * case are ignored, the query is converted to lowercase first, so queries that only differ in case share a result;
+ * compare functions are therefore expected to ignore differences in case when told to, like the ones of
+ * {@link FuzzyStrings} do. The compare function and the candidates are compared by identity: a result is only reused
+ * for the very same compare function object (so a method reference should be stored in a variable rather than
+ * written out at every call) and the very same collection or {@link FuzzyIndex}. A collection must not be modified
+ * while its results are cached; call {@link #invalidateAll()} after modifying it, or match against a new collection.
+ * The cache only refers to the compare functions and the candidates weakly, so it does not keep discarded
+ * collections in memory: once a collection or a compare function has been garbage-collected, its results are
+ * removed from the cache.
+ * <p>
+ * The cache is split into segments, each guarded by its own lock and evicting its least recently used result when
+ * it is full, so threads looking up different queries rarely wait for each other. The results are computed outside
+ * the locks; a result that several threads miss at the same time is computed by each of them. Instances are
+ * thread-safe.
+ */
+public final class MatchCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int maximumSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // the references of the keys whose compare function or candidates have been garbage-collected
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * Creates an empty cache.
+     * @param maximumSize the maximum number of results the cache holds
+     * @throws IllegalArgumentException if {@code maximumSize} is less than {@code 1}
+     */
+    public MatchCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive.");
+        }
+        this.maximumSize = maximumSize;
+        // a power of two, so that a segment can be selected by masking the hash code
+        int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, maximumSize));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // the capacities add up to maximumSize
+            segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the best match for the specified string from a collection of candidates, see
+     * {@link FuzzyStrings#matchOne(String, Collection, StringCompareFunction, boolean)}. The result is taken from
+     * the cache if possible.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return the best match for the specified string from a collection of candidates
+     */
+    public StringMatch matchOne(String s, Collection<String> candidates, StringCompareFunction compareFunction,
+                                boolean ignoreCase) {
+        Key key = new Key(Kind.MATCH_ONE, s, ignoreCase, compareFunction, candidates);
+        StringMatch match = (StringMatch) get(key);
+        if (match == null) {
+            match = FuzzyStrings.matchOne(s, candidates, compareFunction, ignoreCase);
+            put(key, match);
+        }
+        return match;
+    }
+
+    /**
+     * Scores all strings in a collection and returns a list of matches sorted by score (in descending order), see
+     * {@link FuzzyStrings#matchAndSort(String, Collection, StringCompareFunction, boolean)}. The result is taken from
+     * the cache if possible.
+     * @param s a string to match against the collection of candidates
+     * @param candidates a collection of strings to be matched against {@code s}
+     * @param compareFunction a compare function compatible with the {@link StringCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the two strings
+     * @return an unmodifiable {@link List} of {@link StringMatch} objects sorted by their score
+     */
+    public List<StringMatch> matchAndSort(String s, Collection<String> candidates,
+                                          StringCompareFunction compareFunction, boolean ignoreCase) {
+        Key key = new Key(Kind.MATCH_AND_SORT, s, ignoreCase, compareFunction, candidates);
+        @SuppressWarnings("unchecked")
+        List<StringMatch> matches = (List<StringMatch>) get(key);
+        if (matches == null) {
+            matches = Collections.unmodifiableList(
+                    FuzzyStrings.matchAndSort(s, candidates, compareFunction, ignoreCase));
+            put(key, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in an index, see
+     * {@link FuzzyIndex#matchOne(String, PreparedCompareFunction, boolean)}. The result is taken from the cache if
+     * possible.
+     * @param s a string to match against the candidates
+     * @param index the index holding the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return the best match for the specified string
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public StringMatch matchOne(String s, FuzzyIndex index, PreparedCompareFunction compareFunction,
+                                boolean ignoreCase) {
+        Key key = new Key(Kind.MATCH_ONE, s, ignoreCase, compareFunction, index);
+        StringMatch match = (StringMatch) get(key);
+        if (match == null) {
+            match = index.matchOne(s, compareFunction, ignoreCase);
+            put(key, match);
+        }
+        return match;
+    }
+
+    /**
+     * Scores all candidates in an index and returns a list of matches sorted by score (in descending order), see
+     * {@link FuzzyIndex#matchAndSort(String, PreparedCompareFunction, boolean)}. The result is taken from the cache
+     * if possible.
+     * @param s a string to match against the candidates
+     * @param index the index holding the candidates
+     * @param compareFunction a compare function compatible with the {@link PreparedCompareFunction} functional
+     *                        interface
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return an unmodifiable {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is invalid
+     */
+    public List<StringMatch> matchAndSort(String s, FuzzyIndex index, PreparedCompareFunction compareFunction,
+                                          boolean ignoreCase) {
+        Key key = new Key(Kind.MATCH_AND_SORT, s, ignoreCase, compareFunction, index);
+        @SuppressWarnings("unchecked")
+        List<StringMatch> matches = (List<StringMatch>) get(key);
+        if (matches == null) {
+            matches = Collections.unmodifiableList(index.matchAndSort(s, compareFunction, ignoreCase));
+            put(key, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Removes all results from the cache. The counters are not reset.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of results the cache holds.
+     * @return the maximum number of results
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of results in the cache.
+     * @return the number of results in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups that have found their result in the cache.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that have not found their result in the cache and computed it.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of results that have been removed from the cache to make room for new ones.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Object get(Key key) {
+        purge();
+        Segment segment = segment(key);
+        Object value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    private void put(Key key, Object value) {
+        Key stored = key.weak(collected);
+        Segment segment = segment(stored);
+        synchronized (segment) {
+            segment.put(stored, value);
+        }
+    }
+
+    // removes the results whose compare function or candidates have been garbage-collected
+    private void purge() {
+        for (Reference<?> reference; (reference = collected.poll()) != null; ) {
+            Key key = ((KeyReference) reference).key;
+            Segment segment = segment(key);
+            synchronized (segment) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        // spread the high bits, since only the low bits select the segment
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private enum Kind {
+        MATCH_ONE, MATCH_AND_SORT
+    }
+
+    /**
+     * The least recently used results of one segment, which evicts the eldest result when it is full.
+     */
+    private final class Segment extends LinkedHashMap<Key, Object> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The key of a result. The keys used for lookups refer to the compare function and the candidates directly; the
+     * keys stored in the cache only refer to them weakly. Either way, they are compared by identity.
+     */
+    private static final class Key {
+        private final Kind kind;
+        private final String query;
+        private final boolean ignoreCase;
+        private final Object compareFunction;
+        private final Object candidates;
+        private final KeyReference compareFunctionReference;
+        private final KeyReference candidatesReference;
+        private final int hash;
+
+        Key(Kind kind, String query, boolean ignoreCase, Object compareFunction, Object candidates) {
+            this.kind = kind;
+            this.query = normalize(query, ignoreCase);
+            this.ignoreCase = ignoreCase;
+            this.compareFunction = compareFunction;
+            this.candidates = candidates;
+            compareFunctionReference = null;
+            candidatesReference = null;
+            int h = kind.hashCode();
+            h = 31 * h + (this.query == null ? 0 : this.query.hashCode());
+            h = 31 * h + Boolean.hashCode(ignoreCase);
+            h = 31 * h + System.identityHashCode(compareFunction);
+            h = 31 * h + System.identityHashCode(candidates);
+            hash = h;
+        }
+
+        private Key(Key key, ReferenceQueue<Object> queue) {
+            kind = key.kind;
+            query = key.query;
+            ignoreCase = key.ignoreCase;
+            compareFunction = null;
+            candidates = null;
+            compareFunctionReference = new KeyReference(key.compareFunction, queue, this);
+            candidatesReference = new KeyReference(key.candidates, queue, this);
+            hash = key.hash;
+        }
+
+        /**
+         * Returns a copy of this key that only refers to the compare function and the candidates weakly.
+         * @param queue the queue the references are enqueued in once the compare function or the candidates have
+         *              been garbage-collected
+         * @return the copy of this key
+         */
+        Key weak(ReferenceQueue<Object> queue) {
+            return new Key(this, queue);
+        }
+
+        private Object compareFunction() {
+            return compareFunctionReference == null ? compareFunction : compareFunctionReference.get();
+        }
+
+        private Object candidates() {
+            return candidatesReference == null ? candidates : candidatesReference.get();
+        }
+
+        // Converting to lowercase can change the length of a string, and ratio() depends on the original length, so
+        // such queries are kept as they are.
+        private static String normalize(String query, boolean ignoreCase) {
+            if (!ignoreCase || query == null) {
+                return query;
+            }
+            String lowerCase = query.toLowerCase(Locale.ROOT);
+            return lowerCase.length() == query.length() ? lowerCase : query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            if (hash != that.hash || kind != that.kind || ignoreCase != that.ignoreCase
+                    || !(query == null ? that.query == null : query.equals(that.query))) {
+                return false;
+            }
+            // a key whose compare function or candidates have been garbage-collected only equals itself
+            Object function = compareFunction();
+            Object strings = candidates();
+            return function != null && function == that.compareFunction()
+                    && strings != null && strings == that.candidates();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A weak reference from a stored key to its compare function or its candidates.
+     */
+    private static final class KeyReference extends WeakReference<Object> {
+        final Key key;
+
+        KeyReference(Object referent, ReferenceQueue<Object> queue, Key key) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+}
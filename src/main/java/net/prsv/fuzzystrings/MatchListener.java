@@ -0,0 +1,21 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * A listener that receives the statistics of every matching operation, see
+ * {@link FuzzyStrings#setMatchListener(MatchListener)}. The listener is called on the thread that has run the
+ * operation, right before the operation returns, so it may be called from several threads at once and should
+ * return quickly.
+ * <p>
+ * This is a functional interface and can therefore be used as the assignment target for a lambda expression or
+ * method reference.
+ */
+@FunctionalInterface
+public interface MatchListener {
+    void onMatch(MatchStats stats);
+}
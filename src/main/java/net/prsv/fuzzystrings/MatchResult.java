@@ -0,0 +1,45 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable list of matches sorted by score (in descending order) that may only cover part of the candidates,
+ * returned by {@link AsyncMatcher}. If the deadline of a match has passed before all candidates could be scored,
+ * the list holds the matches among the candidates scored so far and {@link #isPartial()} returns {@code true}.
+ */
+public final class MatchResult extends AbstractList<StringMatch> implements RandomAccess {
+
+    private final List<StringMatch> matches;
+    private final boolean partial;
+
+    MatchResult(List<StringMatch> matches, boolean partial) {
+        this.matches = matches;
+        this.partial = partial;
+    }
+
+    /**
+     * Returns {@code true} if some of the candidates have not been scored because the deadline has passed.
+     * @return {@code true} if the result only covers part of the candidates
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    @Override
+    public StringMatch get(int index) {
+        return matches.get(index);
+    }
+
+    @Override
+    public int size() {
+        return matches.size();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * The statistics of one matching operation, such as a call to {@code matchOne()} or {@code matchAndSort()}: how
+ * many candidates have been compared with the query, how many of them have been rejected and why, where the time
+ * has gone, and the distribution of the scores of the candidates that have not been rejected.
+ * <p>
+ * The statistics are only recorded while a {@link MatchListener} is set. Otherwise, the matching methods only check
+ * a local variable per candidate, so disabled instrumentation costs next to nothing. The time spent normalizing
+ * strings only covers the normalization done before the comparisons, e.g. of the query of a {@link FuzzyIndex} or
+ * of the candidates matched against a {@link PreparedString}; whatever a compare function does, including
+ * tokenizing strings on demand, counts as comparison time. The statistics of an operation that throws an exception
+ * are passed to the listener as well, and cover the candidates compared before the exception. The parallel matching
+ * methods of {@link FuzzyStrings} report the same statistics as the corresponding sequential ones; their times are
+ * summed over the threads that have scored the candidates.
+ */
+public final class MatchStats {
+
+    private static volatile MatchListener listener;
+    // the statistics of the operation running on the current thread, so that compare functions can report why they
+    // have rejected a candidate
+    private static final ThreadLocal<MatchStats> current = new ThreadLocal<>();
+
+    private final String operation;
+    private final MatchListener target;
+    private int examined;
+    private final int[] pruned = new int[PruneReason.values().length];
+    private final int[] scores = new int[101];
+    private long normalizationNanos;
+    private long comparisonNanos;
+    // the reason why the compare function has rejected the current candidate, if it has reported one
+    private PruneReason reason;
+    // the statistics that were current on the thread when these were started, restored when they are finished
+    private MatchStats previous;
+
+    private MatchStats(String operation, MatchListener target) {
+        this.operation = operation;
+        this.target = target;
+    }
+
+    static void setListener(MatchListener matchListener) {
+        listener = matchListener;
+    }
+
+    static MatchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Starts recording the statistics of an operation on the current thread.
+     * @param operation the name of the operation
+     * @return the statistics to record to, or {@code null} if no listener is set
+     */
+    static MatchStats start(String operation) {
+        MatchListener target = listener;
+        if (target == null) {
+            return null;
+        }
+        MatchStats stats = new MatchStats(operation, target);
+        stats.previous = current.get();
+        current.set(stats);
+        return stats;
+    }
+
+    /**
+     * Finishes recording the statistics of an operation and passes them to the listener. Meant to be called in a
+     * {@code finally} block, so that the statistics are reported even if the operation fails.
+     * @param stats the statistics returned by {@link #start(String)}, or {@code null}
+     */
+    static void end(MatchStats stats) {
+        if (stats != null) {
+            stats.finish();
+        }
+    }
+
+    /**
+     * Starts recording the part of an operation that runs as a separate task, possibly on another thread.
+     * @param stats the statistics of the operation, or {@code null}
+     * @return the statistics of the part, to be merged by {@link #endPart(MatchStats)}, or {@code null} if
+     *         {@code stats} is {@code null}
+     */
+    static MatchStats startPart(MatchStats stats) {
+        if (stats == null) {
+            return null;
+        }
+        MatchStats part = new MatchStats(stats.operation, null);
+        part.previous = current.get();
+        current.set(part);
+        return part;
+    }
+
+    /**
+     * Reports why a compare function is rejecting the candidate it is comparing, if an operation is being recorded
+     * on the current thread. Without a report, a rejected candidate counts as pruned by the cutoff.
+     * @param reason the reason
+     */
+    static void reject(PruneReason reason) {
+        if (listener != null) {
+            MatchStats stats = current.get();
+            if (stats != null) {
+                stats.reason = reason;
+            }
+        }
+    }
+
+    /**
+     * Records the time spent normalizing strings since {@code startNanos}.
+     * @param startNanos the value of {@link System#nanoTime()} when the normalization started
+     * @return the current value of {@link System#nanoTime()}
+     */
+    long normalized(long startNanos) {
+        long now = System.nanoTime();
+        normalizationNanos += now - startNanos;
+        return now;
+    }
+
+    /**
+     * Records the comparison of a candidate with the query.
+     * @param startNanos the value of {@link System#nanoTime()} when the comparison started
+     * @param score the score of the candidate
+     * @param accepted {@code false} if the candidate has been rejected
+     */
+    void compared(long startNanos, int score, boolean accepted) {
+        comparisonNanos += System.nanoTime() - startNanos;
+        examined++;
+        if (accepted) {
+            scores[Math.max(0, Math.min(100, score))]++;
+        } else {
+            pruned[(reason == null ? PruneReason.CUTOFF : reason).ordinal()]++;
+        }
+        reason = null;
+    }
+
+    /**
+     * Records candidates that an index has ruled out.
+     * @param count the number of candidates
+     */
+    void prunedByIndex(int count) {
+        pruned[PruneReason.INDEX.ordinal()] += count;
+    }
+
+    /**
+     * Stops recording and passes the statistics to the listener.
+     */
+    void finish() {
+        restore();
+        target.onMatch(this);
+    }
+
+    /**
+     * Stops recording a part of this operation started by {@link #startPart(MatchStats)} and adds its statistics to
+     * these. Parts may end on several threads at once.
+     * @param part the statistics of the part
+     */
+    void endPart(MatchStats part) {
+        part.restore();
+        synchronized (this) {
+            examined += part.examined;
+            for (int i = 0; i < pruned.length; i++) {
+                pruned[i] += part.pruned[i];
+            }
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += part.scores[i];
+            }
+            normalizationNanos += part.normalizationNanos;
+            comparisonNanos += part.comparisonNanos;
+        }
+    }
+
+    // makes the statistics that were current when these were started current again
+    private void restore() {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Returns the name of the operation, e.g. {@code "FuzzyStrings.matchOne"} or {@code "FuzzyIndex.matchAndSort"}.
+     * @return the name of the operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the number of candidates that have been compared with the query, including the ones that have been
+     * rejected by the compare function.
+     * @return the number of candidates compared with the query
+     */
+    public int getExaminedCount() {
+        return examined;
+    }
+
+    /**
+     * Returns the number of candidates that have been rejected for the specified reason. Candidates rejected by an
+     * index ({@link PruneReason#INDEX}) have not been examined; the others are included in
+     * {@link #getExaminedCount()}.
+     * @param reason the reason
+     * @return the number of candidates rejected for that reason
+     */
+    public int getPrunedCount(PruneReason reason) {
+        return pruned[reason.ordinal()];
+    }
+
+    /**
+     * Returns the time spent normalizing strings before comparing them.
+     * @return the time in nanoseconds
+     */
+    public long getNormalizationNanos() {
+        return normalizationNanos;
+    }
+
+    /**
+     * Returns the time spent in the compare function.
+     * @return the time in nanoseconds
+     */
+    public long getComparisonNanos() {
+        return comparisonNanos;
+    }
+
+    /**
+     * Returns the number of examined candidates that have not been rejected and have the specified score. Scores
+     * below {@code 0} are counted as {@code 0}.
+     * @param score a score from {@code 0} to {@code 100}
+     * @return the number of candidates with that score
+     * @throws IndexOutOfBoundsException if {@code score} is out of range
+     */
+    public int getScoreCount(int score) {
+        return scores[score];
+    }
+}
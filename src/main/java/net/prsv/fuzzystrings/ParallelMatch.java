@@ -0,0 +1,258 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Fork-join helpers for scoring candidates in parallel. The candidates are identified by their positions
+ * {@code 0..n-1}; the range of positions is split in halves until the parts are small enough to be scored
+ * sequentially, and the results of the parts are merged in the order of the positions, so that the outcome does
+ * not depend on how the work has been scheduled.
+ */
+final class ParallelMatch {
+
+    /**
+     * Inputs with fewer candidates than this are not worth splitting and are scored on the calling thread.
+     */
+    static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    // the smallest part of the input a task scores sequentially
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    // do not instantiate
+    private ParallelMatch() {
+    }
+
+    /**
+     * Returns the position of the best candidate, resolving ties in favor of the last candidate with the best score
+     * like {@link FuzzyStrings#matchOne(String, java.util.Collection, StringCompareFunction, boolean)} does.
+     * @param n the number of candidates
+     * @param scorer returns the score of the candidate at the specified position
+     * @param pool the pool that scores the candidates
+     * @param stats the statistics to record the comparisons to, or {@code null}
+     * @return the position and the score of the best candidate; the position is {@code -1} if no candidate has a
+     *         score of at least {@code -1}
+     */
+    static Best best(int n, IntUnaryOperator scorer, ForkJoinPool pool, MatchStats stats) {
+        return pool.invoke(new BestTask(scorer, 0, n, chunkSize(n, pool), stats));
+    }
+
+    /**
+     * Returns the scores of all candidates.
+     * @param n the number of candidates
+     * @param scorer returns the score of the candidate at the specified position
+     * @param pool the pool that scores the candidates
+     * @param stats the statistics to record the comparisons to, or {@code null}
+     * @return the scores of the candidates, by position
+     */
+    static int[] scores(int n, IntUnaryOperator scorer, ForkJoinPool pool, MatchStats stats) {
+        int[] scores = new int[n];
+        pool.invoke(new ScoresTask(scorer, scores, 0, n, chunkSize(n, pool), stats));
+        return scores;
+    }
+
+    /**
+     * Calls {@code action} for every position from {@code 0} to {@code n - 1} and waits until all calls are done.
+     * @param n the number of candidates
+     * @param action the action to be applied to each position
+     * @param pool the pool that runs the action
+     */
+    static void forEach(int n, IntConsumer action, ForkJoinPool pool) {
+        forEach(n, action, pool, MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Same as {@link #forEach(int, IntConsumer, ForkJoinPool)}, but the parts of the range may be as small as
+     * {@code minChunkSize}, for actions that take much longer than scoring a single candidate.
+     * @param n the number of positions
+     * @param action the action to be applied to each position
+     * @param pool the pool that runs the action
+     * @param minChunkSize the smallest number of positions a task handles sequentially
+     */
+    static void forEach(int n, IntConsumer action, ForkJoinPool pool, int minChunkSize) {
+        forEachRange(n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                action.accept(i);
+            }
+        }, pool, minChunkSize);
+    }
+
+    /**
+     * Splits the positions from {@code 0} to {@code n - 1} into ranges, calls {@code action} for each range and waits
+     * until all calls are done. Unlike {@link #forEach(int, IntConsumer, ForkJoinPool)}, the action can allocate the
+     * scratch space it needs once per range rather than once per position.
+     * @param n the number of positions
+     * @param action the action to be applied to each range
+     * @param pool the pool that runs the action
+     */
+    static void forEachRange(int n, RangeAction action, ForkJoinPool pool) {
+        forEachRange(n, action, pool, MIN_CHUNK_SIZE);
+    }
+
+    private static void forEachRange(int n, RangeAction action, ForkJoinPool pool, int minChunkSize) {
+        pool.invoke(new ForEachAction(action, 0, n, chunkSize(n, pool, minChunkSize)));
+    }
+
+    private static int chunkSize(int n, ForkJoinPool pool) {
+        return chunkSize(n, pool, MIN_CHUNK_SIZE);
+    }
+
+    private static int chunkSize(int n, ForkJoinPool pool, int minChunkSize) {
+        // a few parts per worker, so that workers that finish early can steal from the others
+        return Math.max(minChunkSize, n / (4 * pool.getParallelism()));
+    }
+
+    // scores the candidate at the specified position, recording the comparison if part is not null
+    private static int score(IntUnaryOperator scorer, int position, MatchStats part) {
+        long time = part == null ? 0 : System.nanoTime();
+        int score = scorer.applyAsInt(position);
+        if (part != null) {
+            part.compared(time, score, true);
+        }
+        return score;
+    }
+
+    /**
+     * An action applied to a range of positions.
+     */
+    @FunctionalInterface
+    interface RangeAction {
+        /**
+         * Applies the action to the positions from {@code from} (inclusive) to {@code to} (exclusive).
+         * @param from the first position
+         * @param to the position after the last one
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * The best candidate of a range of positions.
+     */
+    static final class Best {
+        final int score;
+        final int position;
+
+        Best(int score, int position) {
+            this.score = score;
+            this.position = position;
+        }
+    }
+
+    private static final class BestTask extends RecursiveTask<Best> {
+        private final IntUnaryOperator scorer;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final MatchStats stats;
+
+        BestTask(IntUnaryOperator scorer, int from, int to, int chunkSize, MatchStats stats) {
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.stats = stats;
+        }
+
+        @Override
+        protected Best compute() {
+            if (to - from <= chunkSize) {
+                MatchStats part = MatchStats.startPart(stats);
+                try {
+                    int bestScore = -1;
+                    int bestPosition = -1;
+                    for (int i = from; i < to; i++) {
+                        int score = score(scorer, i, part);
+                        if (score >= bestScore) {
+                            bestScore = score;
+                            bestPosition = i;
+                        }
+                    }
+                    return new Best(bestScore, bestPosition);
+                } finally {
+                    if (part != null) {
+                        stats.endPart(part);
+                    }
+                }
+            }
+            int middle = (from + to) >>> 1;
+            BestTask left = new BestTask(scorer, from, middle, chunkSize, stats);
+            left.fork();
+            Best right = new BestTask(scorer, middle, to, chunkSize, stats).compute();
+            Best best = left.join();
+            // the right half comes later, so it wins ties
+            return right.position >= 0 && right.score >= best.score ? right : best;
+        }
+    }
+
+    private static final class ScoresTask extends RecursiveAction {
+        private final IntUnaryOperator scorer;
+        private final int[] scores;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final MatchStats stats;
+
+        ScoresTask(IntUnaryOperator scorer, int[] scores, int from, int to, int chunkSize, MatchStats stats) {
+            this.scorer = scorer;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                MatchStats part = MatchStats.startPart(stats);
+                try {
+                    for (int i = from; i < to; i++) {
+                        scores[i] = score(scorer, i, part);
+                    }
+                } finally {
+                    if (part != null) {
+                        stats.endPart(part);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScoresTask(scorer, scores, from, middle, chunkSize, stats),
+                    new ScoresTask(scorer, scores, middle, to, chunkSize, stats));
+        }
+    }
+
+    private static final class ForEachAction extends RecursiveAction {
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ForEachAction(RangeAction action, int from, int to, int chunkSize) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachAction(action, from, middle, chunkSize),
+                    new ForEachAction(action, middle, to, chunkSize));
+        }
+    }
+}
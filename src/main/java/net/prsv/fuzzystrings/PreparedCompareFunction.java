@@ -0,0 +1,27 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.Collection;
+
+/**
+ * Similar to {@link BoundedStringCompareFunction}, but the compare function works with strings that have already been
+ * prepared for comparison (see {@link PreparedString}), so that the normalization of a query is not repeated for every
+ * candidate it is compared to. Whether differences in case are ignored is determined by the prepared strings.
+ * A compare function is expected to return {@code 0} for pairs whose score is less than {@code scoreCutoff}.
+ * <p>
+ * This is a functional interface and can therefore be used as the assignment target for a lambda expression or
+ * method reference. {@link FuzzyStrings} provides five methods compatible with this functional interface that can
+ * be provided to {@link FuzzyStrings#matchOne(PreparedString, Collection, PreparedCompareFunction, int)} and
+ * {@link FuzzyStrings#matchAndSort(PreparedString, Collection, PreparedCompareFunction, int)}:
+ * {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken}, {@code FuzzyStrings::ratioTokenSet},
+ * {@code FuzzyStrings::partialRatio} and {@code FuzzyStrings::complexRatio}.
+ */
+@FunctionalInterface
+public interface PreparedCompareFunction {
+    int compare(PreparedString s1, PreparedString s2, int scoreCutoff);
+}
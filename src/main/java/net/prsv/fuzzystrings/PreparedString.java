@@ -0,0 +1,262 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.Arrays;
+
+/**
+ * A string that has been prepared for repeated comparisons. It holds the normalized forms of the string that the
+ * compare functions of {@link FuzzyStrings} work with, so that a query that is compared to many candidates is only
+ * normalized and tokenized once. The token IDs, the token set and the pre-processed Levenshtein pattern are computed
+ * on first use and then kept for the lifetime of the object.
+ * <p>
+ * Token-based comparisons work with token IDs assigned by a {@link TokenDictionary}. A prepared string either has
+ * a dictionary of its own, built from its own tokens, or shares the dictionary of an index or of the query it is
+ * going to be compared to, in which case its token IDs can be compared with the IDs of the other string as is.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class PreparedString {
+
+    private final String string;
+    private final boolean ignoreCase;
+    private final String text;
+    // only strings that are expected to be compared many times keep a pre-processed Levenshtein pattern
+    private final boolean reusable;
+    // the string whose dictionary this string shares, if any
+    private final PreparedString reference;
+    private volatile TokenDictionary dictionary;
+    private volatile int[] tokenIds;
+    private volatile int[] tokenSet;
+    private volatile LevenshteinPattern pattern;
+
+    private PreparedString(String s, boolean ignoreCase, boolean reusable, TokenDictionary dictionary,
+                           PreparedString reference) {
+        this.string = s;
+        this.ignoreCase = ignoreCase;
+        this.text = FuzzyStrings.prepare(s, ignoreCase, false);
+        this.reusable = reusable;
+        this.dictionary = dictionary;
+        this.reference = reference;
+    }
+
+    private PreparedString(PreparedString other, boolean ignoreCase) {
+        this.string = other.string;
+        this.ignoreCase = ignoreCase;
+        this.text = other.text;
+        this.reusable = other.reusable;
+        this.reference = other.reference;
+        this.dictionary = other.dictionary;
+        this.tokenIds = other.tokenIds;
+        this.tokenSet = other.tokenSet;
+    }
+
+    /**
+     * Prepares the specified string for repeated comparisons.
+     * @param s the string to be prepared
+     * @param ignoreCase if {@code true}, comparisons with the prepared string will ignore differences in case
+     * @return the prepared string
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public static PreparedString of(String s, boolean ignoreCase) {
+        return of(s, ignoreCase, null);
+    }
+
+    /**
+     * Same as {@link #of(String, boolean)}, but the token IDs of the prepared string are assigned by the specified
+     * dictionary, or by a dictionary of its own if {@code dictionary} is {@code null}.
+     */
+    static PreparedString of(String s, boolean ignoreCase, TokenDictionary dictionary) {
+        FuzzyStrings.validate(s);
+        return new PreparedString(s, ignoreCase, true, dictionary, null);
+    }
+
+    /**
+     * Prepares a string that is only going to be compared once, e.g. a candidate that is compared to a query.
+     * Unlike {@link #of(String, boolean)}, this method does not validate the string and the prepared string does not
+     * keep a Levenshtein pattern.
+     */
+    static PreparedString ofCandidate(String s, boolean ignoreCase) {
+        return new PreparedString(s, ignoreCase, false, null, null);
+    }
+
+    /**
+     * Same as {@link #ofCandidate(String, boolean)}, but the token IDs of the prepared string are assigned by the
+     * specified dictionary.
+     */
+    static PreparedString ofCandidate(String s, boolean ignoreCase, TokenDictionary dictionary) {
+        return new PreparedString(s, ignoreCase, false, dictionary, null);
+    }
+
+    /**
+     * Same as {@link #ofCandidate(String, boolean)}, but the prepared string ignores differences in case if
+     * {@code query} does, and shares the dictionary of {@code query}, so that comparing their tokens does not require
+     * any conversion.
+     */
+    static PreparedString ofCandidate(String s, PreparedString query) {
+        return new PreparedString(s, query.ignoreCase, false, null, query);
+    }
+
+    private PreparedString(String s, boolean ignoreCase, String text, TokenDictionary dictionary, int[] tokenIds,
+                           int[] tokenSet) {
+        this.string = s;
+        this.ignoreCase = ignoreCase;
+        this.text = text;
+        this.reusable = false;
+        this.reference = null;
+        this.dictionary = dictionary;
+        this.tokenIds = tokenIds;
+        this.tokenSet = tokenSet;
+    }
+
+    /**
+     * Restores a candidate whose normalized forms have been computed before, e.g. by an index that has been saved,
+     * without normalizing it again.
+     */
+    static PreparedString restore(String s, boolean ignoreCase, String text, TokenDictionary dictionary,
+                                  int[] tokenIds, int[] tokenSet) {
+        return new PreparedString(s, ignoreCase, text, dictionary, tokenIds, tokenSet);
+    }
+
+    /**
+     * Returns a copy of this string that ignores differences in case, sharing all normalized forms that have already
+     * been computed, if converting the original string to lowercase does not change it. Otherwise, returns
+     * {@code null}.
+     */
+    PreparedString asIgnoreCase() {
+        if (ignoreCase) {
+            return this;
+        }
+        if (!text.equals(FuzzyStrings.prepare(string, true, false))) {
+            return null;
+        }
+        return new PreparedString(this, true);
+    }
+
+    /**
+     * Computes all normalized forms of the string that are otherwise computed on first use, except for the
+     * Levenshtein pattern.
+     * @return this prepared string
+     */
+    PreparedString prepareAll() {
+        tokenIds();
+        tokenSet();
+        return this;
+    }
+
+    /**
+     * Returns the original string.
+     * @return the original string
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * Returns {@code true} if comparisons with this string ignore differences in case.
+     * @return {@code true} if comparisons with this string ignore differences in case
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns the text used for character-based comparisons, i.e. the original string, converted to lowercase if
+     * differences in case are ignored.
+     */
+    String text() {
+        return text;
+    }
+
+    /**
+     * Returns the dictionary that assigns the token IDs of this string.
+     */
+    TokenDictionary dictionary() {
+        TokenDictionary result = dictionary;
+        if (result == null) {
+            // dictionaries built from the same tokens assign the same IDs, so losing a race here is harmless
+            result = reference != null ? reference.dictionary() : TokenDictionary.of(tokenize());
+            dictionary = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the tokens of the string, in the order the tokens appear.
+     */
+    int[] tokenIds() {
+        int[] result = tokenIds;
+        if (result == null) {
+            TokenDictionary dictionary = dictionary();
+            result = dictionary.encode(tokenize());
+            tokenIds = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the tokens of the string as assigned by the specified dictionary. The IDs are only computed
+     * anew if the dictionary differs from {@link #dictionary()}.
+     */
+    int[] tokenIds(TokenDictionary dictionary) {
+        return dictionary == dictionary() ? tokenIds() : dictionary.encode(tokenize());
+    }
+
+    /**
+     * Returns the IDs of the distinct tokens of the string in ascending order.
+     */
+    int[] tokenSet() {
+        int[] result = tokenSet;
+        if (result == null) {
+            result = distinct(tokenIds());
+            tokenSet = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the distinct tokens of the string as assigned by the specified dictionary, in ascending
+     * order. The IDs are only computed anew if the dictionary differs from {@link #dictionary()}.
+     */
+    int[] tokenSet(TokenDictionary dictionary) {
+        return dictionary == dictionary() ? tokenSet() : distinct(dictionary.encode(tokenize()));
+    }
+
+    // splits the string into tokens with the tokenizer of the current thread, which stays valid until its next use
+    private Tokenizer tokenize() {
+        return Tokenizer.get().tokenize(string, ignoreCase);
+    }
+
+    // returns the distinct values of the specified array in ascending order
+    private static int[] distinct(int[] ids) {
+        int[] result = ids.clone();
+        Arrays.sort(result);
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (count == 0 || result[i] != result[count - 1]) {
+                result[count++] = result[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the pre-processed Levenshtein pattern of {@link #text()}, or {@code null} if this string is only going
+     * to be compared once and building the pattern would not pay off.
+     */
+    LevenshteinPattern pattern() {
+        if (!reusable) {
+            return null;
+        }
+        LevenshteinPattern result = pattern;
+        if (result == null) {
+            result = new LevenshteinPattern(text);
+            pattern = result;
+        }
+        return result;
+    }
+}
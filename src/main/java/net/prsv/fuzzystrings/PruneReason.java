@@ -0,0 +1,27 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * The reasons why a candidate can be rejected without being fully scored, as reported by {@link MatchStats}.
+ */
+public enum PruneReason {
+    /**
+     * The candidate has been rejected because the difference between its length (in characters or in tokens) and
+     * the length of the query alone rules out the score cutoff.
+     */
+    LENGTH,
+    /**
+     * The candidate has been compared with the query, but the score has fallen short of the cutoff, possibly before
+     * the comparison was complete.
+     */
+    CUTOFF,
+    /**
+     * The candidate has not been compared with the query at all because an index has ruled it out.
+     */
+    INDEX
+}
@@ -0,0 +1,452 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An inverted index of the character 3-grams of a collection of candidates, used to find the candidates that can
+ * possibly reach a given {@link FuzzyStrings#ratio(String, String, boolean, int) ratio()} score without scoring all
+ * of them.
+ * <p>
+ * The filter is based on the q-gram count lemma: if the Levenshtein distance between two strings of lengths
+ * {@code m} and {@code n} is at most {@code d}, the strings have at least {@code max(m, n) - q + 1 - q * d} q-grams in
+ * common, since each edit operation destroys at most {@code q} q-grams. A score cutoff is converted into the maximum
+ * distance for each candidate length, and only the candidates that share enough 3-grams with the query, or whose
+ * length makes the lemma useless, are scored. The filter is exact: no candidate that reaches the cutoff is ever
+ * skipped, so the methods of this class return the same results as the corresponding methods of
+ * {@link FuzzyStrings} called with {@code FuzzyStrings::ratio} and the same positive cutoff.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class QGramIndex {
+
+    private static final int Q = 3;
+    // packed 3-grams are never negative
+    private static final long EMPTY = -1;
+
+    private final PreparedString[] candidates;
+    private final boolean ignoreCase;
+    // open-addressing hash table mapping packed 3-grams to their posting lists (sorted by candidate position)
+    private final long[] grams;
+    private final int[][] postings;
+    // candidate positions ordered by the length of the original string, and where each length starts
+    private final int[] byLength;
+    private final int[] lengthStarts;
+
+    private QGramIndex(PreparedString[] candidates, boolean ignoreCase, long[] grams, int[][] postings,
+                       int[] byLength, int[] lengthStarts) {
+        this.candidates = candidates;
+        this.ignoreCase = ignoreCase;
+        this.grams = grams;
+        this.postings = postings;
+        this.byLength = byLength;
+        this.lengthStarts = lengthStarts;
+    }
+
+    /**
+     * Builds an index of the specified candidates. The order of the candidates is preserved.
+     * @param candidates a collection of strings to be indexed
+     * @param ignoreCase if {@code true}, the index will ignore differences in case between the candidates and the
+     *                   queries
+     * @return the index
+     * @throws IllegalArgumentException if any of the candidates is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static QGramIndex of(Collection<String> candidates, boolean ignoreCase) {
+        PreparedString[] prepared = new PreparedString[candidates.size()];
+        int i = 0;
+        int maxLength = 0;
+        for (String candidate : candidates) {
+            FuzzyStrings.validate(candidate);
+            prepared[i++] = PreparedString.ofCandidate(candidate, ignoreCase);
+            maxLength = Math.max(maxLength, candidate.length());
+        }
+
+        // first pass: count the occurrences of each 3-gram
+        GramTable table = new GramTable();
+        for (PreparedString candidate : prepared) {
+            String text = candidate.text();
+            for (int j = 0; j + Q <= text.length(); j++) {
+                table.add(gram(text, j));
+            }
+        }
+
+        // second pass: fill the posting lists; a candidate appears once per occurrence of the 3-gram
+        long[] grams = table.keys;
+        int[] sizes = table.counts;
+        int[][] postings = new int[grams.length][];
+        for (int slot = 0; slot < grams.length; slot++) {
+            if (grams[slot] != EMPTY) {
+                postings[slot] = new int[sizes[slot]];
+            }
+        }
+        Arrays.fill(sizes, 0);
+        for (int id = 0; id < prepared.length; id++) {
+            String text = prepared[id].text();
+            for (int j = 0; j + Q <= text.length(); j++) {
+                int slot = slot(grams, gram(text, j));
+                postings[slot][sizes[slot]++] = id;
+            }
+        }
+
+        // bucket the candidates by the length of the original string
+        int[] lengthStarts = new int[maxLength + 2];
+        for (PreparedString candidate : prepared) {
+            lengthStarts[candidate.getString().length() + 1]++;
+        }
+        for (int length = 0; length <= maxLength; length++) {
+            lengthStarts[length + 1] += lengthStarts[length];
+        }
+        int[] byLength = new int[prepared.length];
+        int[] next = Arrays.copyOf(lengthStarts, lengthStarts.length);
+        for (int id = 0; id < prepared.length; id++) {
+            byLength[next[prepared[id].getString().length()]++] = id;
+        }
+        return new QGramIndex(prepared, ignoreCase, grams, postings, byLength, lengthStarts);
+    }
+
+    /**
+     * Returns the number of candidates in the index.
+     * @return the number of candidates in the index
+     */
+    public int size() {
+        return candidates.length;
+    }
+
+    /**
+     * Returns the candidate at the specified position.
+     * @param index the position of the candidate
+     * @return the candidate at the specified position
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public String get(int index) {
+        return candidates[index].getString();
+    }
+
+    /**
+     * Returns {@code true} if the index ignores differences in case.
+     * @return {@code true} if the index ignores differences in case
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Returns the positions of the candidates whose {@code ratio()} score with the specified string can be at least
+     * {@code scoreCutoff}, in ascending order. Every candidate that reaches the cutoff is included, but some of the
+     * returned candidates may not reach it. If {@code scoreCutoff} is not positive, all candidates are returned.
+     * @param s a string to match against the candidates
+     * @param scoreCutoff the minimum score of interest
+     * @return the positions of the candidates that can reach {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public int[] filter(String s, int scoreCutoff) {
+        return filter(PreparedString.of(s, ignoreCase), scoreCutoff);
+    }
+
+    private int[] filter(PreparedString query, int scoreCutoff) {
+        if (scoreCutoff <= 0) {
+            int[] all = new int[candidates.length];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+        String text = query.text();
+        int queryLength = query.getString().length();
+        int textLength = text.length();
+        // the maximum distance for each candidate length, or -1 if no candidate of that length can reach the cutoff
+        int[] maxDistances = new int[lengthStarts.length - 1];
+        for (int length = 0; length < maxDistances.length; length++) {
+            maxDistances[length] = lengthStarts[length + 1] > lengthStarts[length]
+                    ? FuzzyStrings.maxDistance(queryLength + length, scoreCutoff) : -1;
+        }
+
+        CandidateCounts counts = new CandidateCounts();
+        // count the common 3-grams; a 3-gram that occurs several times in the query matches up to as many
+        // occurrences in a candidate
+        long[] queryGrams = new long[Math.max(0, textLength - Q + 1)];
+        for (int j = 0; j < queryGrams.length; j++) {
+            queryGrams[j] = gram(text, j);
+        }
+        Arrays.sort(queryGrams);
+        for (int j = 0; j < queryGrams.length; ) {
+            long gram = queryGrams[j];
+            int occurrences = 0;
+            while (j < queryGrams.length && queryGrams[j] == gram) {
+                occurrences++;
+                j++;
+            }
+            int slot = slot(grams, gram);
+            if (grams[slot] == EMPTY) {
+                continue;
+            }
+            int[] posting = postings[slot];
+            int run = 0;
+            for (int k = 0; k < posting.length; k++) {
+                int id = posting[k];
+                run = k > 0 && posting[k - 1] == id ? run + 1 : 1;
+                if (run <= occurrences) {
+                    counts.increment(id);
+                }
+            }
+        }
+
+        int[] result = new int[16];
+        int resultCount = 0;
+        for (int slot = 0; slot < counts.ids.length; slot++) {
+            int id = counts.ids[slot];
+            if (id == CandidateCounts.EMPTY_ID) {
+                continue;
+            }
+            int count = counts.counts[slot];
+            int threshold = threshold(id, textLength, maxDistances);
+            if (threshold > 0 && count >= threshold) {
+                if (resultCount == result.length) {
+                    result = Arrays.copyOf(result, 2 * resultCount);
+                }
+                result[resultCount++] = id;
+            }
+        }
+        // the lemma says nothing about candidates whose threshold is not positive, so they are all kept
+        for (int length = 0; length < maxDistances.length; length++) {
+            int maxDistance = maxDistances[length];
+            // the threshold of a candidate is at least the one computed from the length of the query alone
+            if (maxDistance < 0 || textLength - Q + 1 - Q * maxDistance > 0) {
+                continue;
+            }
+            for (int k = lengthStarts[length]; k < lengthStarts[length + 1]; k++) {
+                int id = byLength[k];
+                if (threshold(id, textLength, maxDistances) == 0) {
+                    if (resultCount == result.length) {
+                        result = Arrays.copyOf(result, 2 * resultCount);
+                    }
+                    result[resultCount++] = id;
+                }
+            }
+        }
+        result = Arrays.copyOf(result, resultCount);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the number of 3-grams the candidate must share with the query to possibly reach the cutoff, {@code 0}
+     * if the lemma cannot tell, or {@code -1} if the candidate cannot reach the cutoff at all.
+     */
+    private int threshold(int id, int queryTextLength, int[] maxDistances) {
+        PreparedString candidate = candidates[id];
+        int maxDistance = maxDistances[candidate.getString().length()];
+        int textLength = candidate.text().length();
+        if (maxDistance < 0 || Math.abs(textLength - queryTextLength) > maxDistance) {
+            return -1;
+        }
+        return Math.max(0, Math.max(textLength, queryTextLength) - Q + 1 - Q * maxDistance);
+    }
+
+    /**
+     * Returns the best match for the specified string among the candidates in the index, scored by
+     * {@code ratio()}, ignoring candidates whose score is less than {@code scoreCutoff}. Only the candidates returned
+     * by {@link #filter(String, int)} are scored. The result is the same as the one of
+     * {@link FuzzyStrings#matchOne(String, Collection, BoundedStringCompareFunction, boolean, int)} called with
+     * {@code FuzzyStrings::ratio}.
+     * @param s a string to match against the candidates
+     * @param scoreCutoff the minimum score of interest
+     * @return the best match for the specified string, or a match with a score of {@code -1} and empty text if no
+     *         candidate reaches {@code scoreCutoff}
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public StringMatch matchOne(String s, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("QGramIndex.matchOne");
+        try {
+            long time = stats == null ? 0 : System.nanoTime();
+            PreparedString query = PreparedString.of(s, ignoreCase);
+            if (stats != null) {
+                stats.normalized(time);
+            }
+            int bestRatio = -1;
+            String matchedString = "";
+            int currentCutoff = scoreCutoff;
+            int[] filtered = filter(query, scoreCutoff);
+            if (stats != null) {
+                stats.prunedByIndex(candidates.length - filtered.length);
+            }
+            for (int id : filtered) {
+                time = stats == null ? 0 : System.nanoTime();
+                int currentRatio = FuzzyStrings.ratio(query, candidates[id], FuzzyStrings.pruningCutoff(currentCutoff));
+                if (stats != null) {
+                    stats.compared(time, currentRatio, currentRatio >= currentCutoff);
+                }
+                if (currentRatio >= currentCutoff && currentRatio >= bestRatio) {
+                    matchedString = candidates[id].getString();
+                    bestRatio = currentRatio;
+                    currentCutoff = Math.max(currentCutoff, currentRatio);
+                }
+            }
+            return new StringMatch(bestRatio, matchedString);
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    /**
+     * Scores the candidates in the index that can reach {@code scoreCutoff} with {@code ratio()} and returns a list
+     * of the matches whose score is at least {@code scoreCutoff}, sorted by score (in descending order). The result
+     * is the same as the one of
+     * {@link FuzzyStrings#matchAndSort(String, Collection, BoundedStringCompareFunction, boolean, int)} called with
+     * {@code FuzzyStrings::ratio}.
+     * @param s a string to match against the candidates
+     * @param scoreCutoff the minimum score of interest
+     * @return a {@link List} of {@link StringMatch} objects sorted by their score
+     * @throws IllegalArgumentException if {@code s} is {@code null}, empty, or contains only whitespace characters
+     */
+    public List<StringMatch> matchAndSort(String s, int scoreCutoff) {
+        MatchStats stats = MatchStats.start("QGramIndex.matchAndSort");
+        try {
+            long time = stats == null ? 0 : System.nanoTime();
+            PreparedString query = PreparedString.of(s, ignoreCase);
+            if (stats != null) {
+                stats.normalized(time);
+            }
+            List<StringMatch> results = new ArrayList<>();
+            int[] filtered = filter(query, scoreCutoff);
+            if (stats != null) {
+                stats.prunedByIndex(candidates.length - filtered.length);
+            }
+            for (int id : filtered) {
+                time = stats == null ? 0 : System.nanoTime();
+                int ratio = FuzzyStrings.ratio(query, candidates[id], FuzzyStrings.pruningCutoff(scoreCutoff));
+                if (stats != null) {
+                    stats.compared(time, ratio, ratio >= scoreCutoff);
+                }
+                if (ratio >= scoreCutoff) {
+                    results.add(new StringMatch(ratio, candidates[id].getString()));
+                }
+            }
+            results.sort(Collections.reverseOrder());
+            return results;
+        } finally {
+            MatchStats.end(stats);
+        }
+    }
+
+    // packs the 3-gram starting at the specified position into a non-negative long
+    private static long gram(String text, int position) {
+        return ((long) text.charAt(position) << 32) | ((long) text.charAt(position + 1) << 16)
+                | text.charAt(position + 2);
+    }
+
+    // returns the slot holding the gram, or the empty slot where it would be inserted; the length of the table is a
+    // power of two, and the slot is taken from the high bits of the multiplicative hash, which are the best mixed
+    private static int slot(long[] grams, long gram) {
+        int mask = grams.length - 1;
+        int slot = (int) ((gram * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(grams.length)));
+        while (grams[slot] != EMPTY && grams[slot] != gram) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * A growing hash table counting the occurrences of 3-grams, used while the index is built.
+     */
+    private static final class GramTable {
+        long[] keys = empty(16);
+        int[] counts = new int[16];
+        int size;
+
+        void add(long gram) {
+            int slot = slot(keys, gram);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = gram;
+                // keep the load factor at or below 1/2
+                if (2 * ++size > keys.length) {
+                    grow();
+                    slot = slot(keys, gram);
+                }
+            }
+            counts[slot]++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = empty(2 * oldKeys.length);
+            counts = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static long[] empty(int size) {
+            long[] result = new long[size];
+            Arrays.fill(result, EMPTY);
+            return result;
+        }
+    }
+
+    /**
+     * A growing hash table counting the 3-grams the candidates share with a query. It only holds the candidates that
+     * share at least one 3-gram with the query, so the memory a query needs does not grow with the size of the index.
+     */
+    private static final class CandidateCounts {
+        static final int EMPTY_ID = -1;
+
+        int[] ids = empty(16);
+        int[] counts = new int[16];
+        int size;
+
+        void increment(int id) {
+            int slot = slot(ids, id);
+            if (ids[slot] == EMPTY_ID) {
+                ids[slot] = id;
+                // keep the load factor at or below 1/2
+                if (2 * ++size > ids.length) {
+                    grow();
+                    slot = slot(ids, id);
+                }
+            }
+            counts[slot]++;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            int[] oldCounts = counts;
+            ids = empty(2 * oldIds.length);
+            counts = new int[ids.length];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY_ID) {
+                    int slot = slot(ids, oldIds[i]);
+                    ids[slot] = oldIds[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slot(int[] ids, int id) {
+            int mask = ids.length - 1;
+            int slot = (id * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(ids.length));
+            while (ids[slot] != EMPTY_ID && ids[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int[] empty(int size) {
+            int[] result = new int[size];
+            Arrays.fill(result, EMPTY_ID);
+            return result;
+        }
+    }
+}
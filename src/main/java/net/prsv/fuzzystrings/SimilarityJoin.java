@@ -0,0 +1,299 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Finds all pairs of strings in a collection whose {@link FuzzyStrings#complexRatio(String, String, boolean)
+ * complexRatio()} score reaches a threshold, without comparing every string with every other one.
+ * <p>
+ * {@code complexRatio()} is the average of three scores that are at most 100, one of which is the token set score,
+ * i.e. the <a href="https://en.wikipedia.org/wiki/S%C3%B8rensen%E2%80%93Dice_coefficient">Dice coefficient</a> of the
+ * two token sets. A threshold on {@code complexRatio()} therefore implies a minimum Dice coefficient, which in turn
+ * implies both a minimum and a maximum size of the token set of a matching string (length filtering) and a minimum
+ * number of common tokens. With the tokens of every string ordered from the rarest to the most frequent one, two
+ * strings with that many common tokens must share a token among the first few tokens of each (prefix filtering), so
+ * only the strings that share such a prefix token are compared. Both filters are exact: no pair that reaches the
+ * threshold is ever skipped. The remaining comparisons run in parallel, with {@code complexRatio()} pruned by the
+ * threshold.
+ * <p>
+ * Pairs are reported to a consumer as soon as they are found, so they never need to be held in memory.
+ */
+public final class SimilarityJoin {
+
+    // do not instantiate
+    private SimilarityJoin() {
+    }
+
+    /**
+     * A consumer of similar pairs. The calls are serialized, so the consumer needs no synchronization of its own,
+     * but they come from the threads of the pool running the join and in no particular order.
+     */
+    @FunctionalInterface
+    public interface PairConsumer {
+        /**
+         * Accepts a pair of similar strings.
+         * @param first the position of one of the strings in the collection
+         * @param second the position of the other string in the collection, always less than {@code first}
+         * @param score the {@code complexRatio()} score of the pair
+         */
+        void accept(int first, int second, int score);
+    }
+
+    /**
+     * Equivalent to calling {@code join(strings, threshold, ignoreCase, consumer, ForkJoinPool.commonPool())}.
+     * @param strings the strings to be joined
+     * @param threshold the minimum score of a pair
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param consumer the consumer of the pairs
+     * @throws IllegalArgumentException if any of the strings is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static void join(Collection<String> strings, int threshold, boolean ignoreCase, PairConsumer consumer) {
+        join(strings, threshold, ignoreCase, consumer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reports every pair of strings in the collection whose {@code complexRatio()} score is at least
+     * {@code threshold} to the consumer. Each pair is reported once, with the position of the later string first.
+     * The method returns when all pairs have been reported.
+     * @param strings the strings to be joined
+     * @param threshold the minimum score of a pair
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param consumer the consumer of the pairs
+     * @param pool the pool that compares the strings
+     * @throws IllegalArgumentException if any of the strings is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static void join(Collection<String> strings, int threshold, boolean ignoreCase, PairConsumer consumer,
+                            ForkJoinPool pool) {
+        int n = strings.size();
+        PreparedString[] prepared = new PreparedString[n];
+        TokenDictionary dictionary = new TokenDictionary();
+        int position = 0;
+        for (String s : strings) {
+            FuzzyStrings.validate(s);
+            prepared[position++] = PreparedString.ofCandidate(s, ignoreCase, dictionary).prepareAll();
+        }
+        dictionary.freeze();
+        if (threshold > 100 || n < 2) {
+            return;
+        }
+        // the minimum token set score, minus one to stay on the safe side of the rounding of the score
+        int minimumDice = threshold > 0 ? FuzzyStrings.minimumComplexSum(threshold) - 200 - 1 : 0;
+        // a lock of its own rather than the consumer, which the caller may be locking for reasons of its own
+        Object lock = new Object();
+        PairConsumer serialized = (first, second, score) -> {
+            synchronized (lock) {
+                consumer.accept(first, second, score);
+            }
+        };
+        if (minimumDice <= 0) {
+            // the token sets do not need to have anything in common, so every pair has to be compared
+            ParallelMatch.forEach(n, first -> {
+                for (int second = 0; second < first; second++) {
+                    compare(prepared, first, second, threshold, serialized);
+                }
+            }, pool);
+            return;
+        }
+        new Filter(prepared, dictionary.size(), minimumDice).run(threshold, serialized, pool);
+    }
+
+    /**
+     * Equivalent to calling {@code clusters(strings, threshold, ignoreCase, ForkJoinPool.commonPool())}.
+     * @param strings the strings to be clustered
+     * @param threshold the minimum score of a pair
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @return the clusters, see {@link #clusters(Collection, int, boolean, ForkJoinPool)}
+     * @throws IllegalArgumentException if any of the strings is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static List<int[]> clusters(Collection<String> strings, int threshold, boolean ignoreCase) {
+        return clusters(strings, threshold, ignoreCase, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Groups the strings of the collection into clusters, i.e. the connected components of the graph whose edges
+     * are the pairs reported by {@link #join(Collection, int, boolean, PairConsumer, ForkJoinPool)}. The pairs are
+     * merged into the clusters as they are found, so memory stays linear in the size of the collection.
+     * @param strings the strings to be clustered
+     * @param threshold the minimum score of a pair
+     * @param ignoreCase if {@code true}, the method will ignore differences in case between the strings
+     * @param pool the pool that compares the strings
+     * @return the clusters of at least two strings, each as an ascending array of positions in the collection,
+     *         ordered by their first position
+     * @throws IllegalArgumentException if any of the strings is {@code null}, empty, or contains only whitespace
+     *                                  characters
+     */
+    public static List<int[]> clusters(Collection<String> strings, int threshold, boolean ignoreCase,
+                                       ForkJoinPool pool) {
+        int n = strings.size();
+        // union-find forest; the root of every tree is its smallest position
+        int[] parents = new int[n];
+        Arrays.setAll(parents, i -> i);
+        join(strings, threshold, ignoreCase, (first, second, score) -> {
+            int root1 = find(parents, first);
+            int root2 = find(parents, second);
+            parents[Math.max(root1, root2)] = Math.min(root1, root2);
+        }, pool);
+        int[] sizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            sizes[find(parents, i)]++;
+        }
+        List<int[]> clusters = new ArrayList<>();
+        int[][] byRoot = new int[n][];
+        int[] filled = new int[n];
+        for (int i = 0; i < n; i++) {
+            int root = find(parents, i);
+            if (sizes[root] > 1) {
+                if (root == i) {
+                    byRoot[i] = new int[sizes[i]];
+                    clusters.add(byRoot[i]);
+                }
+                byRoot[root][filled[root]++] = i;
+            }
+        }
+        return clusters;
+    }
+
+    // finds the root of the tree, halving the path on the way
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void compare(PreparedString[] prepared, int first, int second, int threshold,
+                                PairConsumer consumer) {
+        int score = FuzzyStrings.complexRatio(prepared[first], prepared[second], FuzzyStrings.pruningCutoff(threshold));
+        if (score >= threshold) {
+            consumer.accept(first, second, score);
+        }
+    }
+
+    /**
+     * Length and prefix filtering for a minimum token set score. With {@code m} the minimum score, two token sets of
+     * sizes {@code x} and {@code y} can only reach it if they have at least {@code m * (x + y) / 200} tokens in
+     * common, which requires {@code y >= m * x / (200 - m)} and at least {@code m * x / (200 - m)} common tokens.
+     */
+    private static final class Filter {
+        private final PreparedString[] prepared;
+        private final int minimumDice;
+        // the positions of the strings ordered by the size of their token set
+        private final int[] byOrder;
+        // the token set of each string in the order from the rarest to the most frequent token
+        private final int[][] sets;
+        // the orders of the strings having each token in their prefix, in ascending order
+        private final int[][] postings;
+
+        Filter(PreparedString[] prepared, int tokens, int minimumDice) {
+            this.prepared = prepared;
+            this.minimumDice = minimumDice;
+            int n = prepared.length;
+            int[] frequencies = new int[tokens];
+            for (PreparedString s : prepared) {
+                for (int token : s.tokenSet()) {
+                    frequencies[token]++;
+                }
+            }
+            // rank the tokens from the rarest to the most frequent one
+            Integer[] byFrequency = new Integer[tokens];
+            Arrays.setAll(byFrequency, i -> i);
+            Arrays.sort(byFrequency, (a, b) -> frequencies[a] != frequencies[b]
+                    ? Integer.compare(frequencies[a], frequencies[b]) : Integer.compare(a, b));
+            int[] ranks = new int[tokens];
+            for (int rank = 0; rank < tokens; rank++) {
+                ranks[byFrequency[rank]] = rank;
+            }
+            sets = new int[n][];
+            for (int i = 0; i < n; i++) {
+                int[] set = prepared[i].tokenSet().clone();
+                for (int j = 0; j < set.length; j++) {
+                    set[j] = ranks[set[j]];
+                }
+                Arrays.sort(set);
+                sets[i] = set;
+            }
+            Integer[] order = new Integer[n];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> sets[a].length != sets[b].length
+                    ? Integer.compare(sets[a].length, sets[b].length) : Integer.compare(a, b));
+            byOrder = new int[n];
+            Arrays.setAll(byOrder, i -> order[i]);
+            int[] sizes = new int[tokens];
+            for (int[] set : sets) {
+                for (int j = 0; j < prefixLength(set.length); j++) {
+                    sizes[set[j]]++;
+                }
+            }
+            postings = new int[tokens][];
+            for (int token = 0; token < tokens; token++) {
+                postings[token] = new int[sizes[token]];
+            }
+            Arrays.fill(sizes, 0);
+            for (int o = 0; o < n; o++) {
+                int[] set = sets[byOrder[o]];
+                for (int j = 0; j < prefixLength(set.length); j++) {
+                    postings[set[j]][sizes[set[j]]++] = o;
+                }
+            }
+        }
+
+        // the smallest number of common tokens a set of the specified size needs with any other set
+        private int minimumOverlap(int size) {
+            return (int) Math.ceil((double) minimumDice * size / (200 - minimumDice));
+        }
+
+        private int prefixLength(int size) {
+            return Math.min(size, size - minimumOverlap(size) + 1);
+        }
+
+        void run(int threshold, PairConsumer consumer, ForkJoinPool pool) {
+            int n = prepared.length;
+            ParallelMatch.forEachRange(n, (from, to) -> {
+                // marks the strings a probe has already compared; probes only look at the strings before them in
+                // the order, so the marks only need to cover the positions before the end of the range
+                int[] marked = new int[to];
+                Arrays.fill(marked, -1);
+                for (int o = from; o < to; o++) {
+                    probe(o, marked, threshold, consumer);
+                }
+            }, pool);
+        }
+
+        // compares the string at the specified position in the order with the strings before it that share a prefix
+        // token with it
+        private void probe(int o, int[] marked, int threshold, PairConsumer consumer) {
+            int first = byOrder[o];
+            int[] set = sets[first];
+            int minimumSize = minimumOverlap(set.length);
+            for (int j = 0; j < prefixLength(set.length); j++) {
+                for (int other : postings[set[j]]) {
+                    // only strings before this one in the order, so that every pair is probed once
+                    if (other >= o) {
+                        break;
+                    }
+                    if (marked[other] == o || sets[byOrder[other]].length < minimumSize) {
+                        continue;
+                    }
+                    marked[other] = o;
+                    int second = byOrder[other];
+                    // report the later position first
+                    compare(prepared, Math.max(first, second), Math.min(first, second), threshold, consumer);
+                }
+            }
+        }
+    }
+}
@@ -10,11 +10,11 @@ import java.util.Collection;
 
 /**
  * This is a functional interface and can therefore be used as the assignment target for a lambda expression
- * or method reference. {@link FuzzyStrings} provides four methods compatible with this functional interface that can
+ * or method reference. {@link FuzzyStrings} provides five methods compatible with this functional interface that can
  * be provided to {@link FuzzyStrings#matchOne(String, Collection, StringCompareFunction, boolean)} and
  * {@link FuzzyStrings#matchAndSort(String, Collection, StringCompareFunction, boolean)}:
- * {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken}, {@code FuzzyStrings::ratioTokenSet}
- * and {@code FuzzyStrings::complexRatio}.
+ * {@code FuzzyStrings::ratio}, {@code FuzzyStrings::ratioToken}, {@code FuzzyStrings::ratioTokenSet},
+ * {@code FuzzyStrings::partialRatio} and {@code FuzzyStrings::complexRatio}.
  */
 @FunctionalInterface
 public interface StringCompareFunction {
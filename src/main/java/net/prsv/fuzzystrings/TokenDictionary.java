@@ -0,0 +1,234 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * Maps distinct tokens to consecutive {@code int} IDs, so that token sequences can be compared as {@code int[]}
+ * instead of {@code String[]}. Two token sequences can only be compared by ID if they have been encoded with the
+ * same dictionary. Tokens are read directly from the buffer of a {@link Tokenizer}, so looking them up does not create
+ * any strings; only tokens that are added to the dictionary are copied.
+ * <p>
+ * A dictionary is either growing, in which case encoding a token that is not in the dictionary yet adds it, or
+ * frozen, in which case such a token gets a temporary ID that is not used by any token in the dictionary. Temporary
+ * IDs are only unique within one encoded sequence, which is sufficient as long as sequences containing unknown
+ * tokens are only compared with sequences encoded by the dictionary itself.
+ * <p>
+ * A frozen dictionary is immutable and can be shared between threads; a growing one is not thread-safe.
+ */
+final class TokenDictionary {
+
+    // open-addressing hash table; a slot holds a token and its ID, or null
+    private String[] keys = new String[16];
+    private int[] ids = new int[16];
+    private int size;
+    private boolean frozen;
+
+    /**
+     * Creates an empty, growing dictionary.
+     */
+    TokenDictionary() {
+    }
+
+    /**
+     * Creates a frozen dictionary containing the tokens the specified tokenizer holds.
+     * @param tokenizer a tokenizer holding the tokens
+     * @return the dictionary
+     */
+    static TokenDictionary of(Tokenizer tokenizer) {
+        TokenDictionary dictionary = new TokenDictionary();
+        for (int i = 0; i < tokenizer.count(); i++) {
+            dictionary.intern(tokenizer.chars(), tokenizer.start(i), tokenizer.end(i));
+        }
+        dictionary.freeze();
+        return dictionary;
+    }
+
+    /**
+     * Creates a frozen dictionary containing the specified tokens, with the position of each token as its ID.
+     * @param tokens the distinct tokens, ordered by their IDs, as returned by {@link #tokens()}
+     * @return the dictionary
+     */
+    static TokenDictionary of(String[] tokens) {
+        TokenDictionary dictionary = new TokenDictionary();
+        for (String token : tokens) {
+            char[] chars = token.toCharArray();
+            dictionary.intern(chars, 0, chars.length);
+        }
+        dictionary.freeze();
+        return dictionary;
+    }
+
+    /**
+     * Returns the tokens in the dictionary, ordered by their IDs.
+     * @return the tokens in the dictionary
+     */
+    String[] tokens() {
+        String[] tokens = new String[size];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                tokens[ids[slot]] = keys[slot];
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Stops the dictionary from growing.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Returns the number of tokens in the dictionary.
+     * @return the number of tokens in the dictionary
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ID of the token held by {@code chars[from..to)}, adding the token to the dictionary if necessary.
+     * @param chars the buffer holding the token
+     * @param from the start of the token (inclusive)
+     * @param to the end of the token (exclusive)
+     * @return the ID of the token
+     * @throws IllegalStateException if the dictionary is frozen and does not contain the token
+     */
+    int intern(char[] chars, int from, int to) {
+        int slot = slot(hash(chars, from, to), chars, from, to);
+        if (keys[slot] != null) {
+            return ids[slot];
+        }
+        if (frozen) {
+            throw new IllegalStateException("Dictionary is frozen.");
+        }
+        return add(slot, chars, from, to);
+    }
+
+    // adds the token to the empty slot where slot() has found it would be inserted, and returns its ID
+    private int add(int slot, char[] chars, int from, int to) {
+        keys[slot] = new String(chars, from, to - from);
+        ids[slot] = size++;
+        // keep the load factor at or below 1/2
+        if (2 * size > keys.length) {
+            grow();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the ID of the token held by {@code chars[from..to)}, or {@code -1} if the dictionary does not contain
+     * it.
+     * @param chars the buffer holding the token
+     * @param from the start of the token (inclusive)
+     * @param to the end of the token (exclusive)
+     * @return the ID of the token, or {@code -1}
+     */
+    int lookup(char[] chars, int from, int to) {
+        int slot = slot(hash(chars, from, to), chars, from, to);
+        return keys[slot] == null ? -1 : ids[slot];
+    }
+
+    /**
+     * Encodes the tokens the specified tokenizer holds. See the class description for the treatment of tokens that
+     * are not in the dictionary.
+     * @param tokenizer a tokenizer holding the tokens
+     * @return the IDs of the tokens
+     */
+    int[] encode(Tokenizer tokenizer) {
+        char[] chars = tokenizer.chars();
+        int[] result = new int[tokenizer.count()];
+        int nextTemporaryId = size;
+        // Candidates encoded with the dictionary of a query consist mostly of unknown tokens, so the first occurrence
+        // of each unknown token is kept in a small open-addressing table (positions plus one, 0 for empty slots),
+        // created on the first unknown token and sized for a load factor of at most 1/2.
+        int[] unknown = null;
+        for (int i = 0; i < result.length; i++) {
+            int from = tokenizer.start(i);
+            int to = tokenizer.end(i);
+            int hash = hash(chars, from, to);
+            int slot = slot(hash, chars, from, to);
+            int id;
+            if (keys[slot] != null) {
+                id = ids[slot];
+            } else if (!frozen) {
+                id = add(slot, chars, from, to);
+            } else {
+                if (unknown == null) {
+                    unknown = new int[Integer.highestOneBit(result.length) << 2];
+                }
+                int mask = unknown.length - 1;
+                int u = spread(hash) & mask;
+                while (unknown[u] != 0 && !tokenizer.equal(i, unknown[u] - 1)) {
+                    u = (u + 1) & mask;
+                }
+                if (unknown[u] == 0) {
+                    unknown[u] = i + 1;
+                    id = nextTemporaryId++;
+                } else {
+                    id = result[unknown[u] - 1];
+                }
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    // same hash as String.hashCode(), so that growing the table can use the cached hashes of the keys
+    private static int hash(char[] chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    // returns the slot holding the token with the specified hash, or the empty slot where it would be inserted
+    private int slot(int hash, char[] chars, int from, int to) {
+        int mask = keys.length - 1;
+        int slot = spread(hash) & mask;
+        while (keys[slot] != null && !matches(keys[slot], chars, from, to)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(String key, char[] chars, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (key.charAt(i - from) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new String[2 * oldKeys.length];
+        ids = new int[2 * oldKeys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = spread(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import java.util.Locale;
+
+/**
+ * Splits strings into tokens in a single pass, without regular expressions and without creating intermediate
+ * strings. A token is an uninterrupted sequence of word characters, i.e. of the characters matched by {@code \w}
+ * with {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}; the tokens are the same as the ones produced by
+ * replacing all sequences of non-word characters with a single space, stripping the result, optionally converting it
+ * to lowercase, and splitting it on spaces. In particular, a string without word characters has exactly one token,
+ * which is empty.
+ * <p>
+ * The characters of the tokens of the last tokenized string are stored back-to-back in a buffer that is reused by
+ * the next call to {@link #tokenize(CharSequence, boolean)}, so tokenizing does not allocate memory once the buffers
+ * are large enough. Instances are not thread-safe; {@link #get()} returns an instance confined to the current thread.
+ */
+final class Tokenizer {
+
+    private static final ThreadLocal<Tokenizer> local = ThreadLocal.withInitial(Tokenizer::new);
+
+    // the characters of the tokens
+    private char[] chars = new char[64];
+    // the end of each token in chars; each token starts where the previous one ends
+    private int[] ends = new int[16];
+    private int count;
+
+    /**
+     * Returns the tokenizer of the current thread. The caller must not use it again after calling a method that
+     * might use it as well.
+     * @return the tokenizer of the current thread
+     */
+    static Tokenizer get() {
+        return local.get();
+    }
+
+    /**
+     * Returns {@code true} if the specified code point is a word character ({@code \w} in regex parlance with
+     * {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}), that is, if it is alphabetic, a mark, a decimal
+     * digit, a connector punctuation character or a join control character.
+     * @param codePoint the code point to be checked
+     * @return {@code true} if the code point is a word character
+     */
+    static boolean isWordCharacter(int codePoint) {
+        if (codePoint < 128) {
+            return (codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z')
+                    || (codePoint >= '0' && codePoint <= '9') || codePoint == '_';
+        }
+        if (Character.isAlphabetic(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK || type == Character.DECIMAL_DIGIT_NUMBER
+                || type == Character.CONNECTOR_PUNCTUATION || codePoint == '\u200C' || codePoint == '\u200D';
+    }
+
+    /**
+     * Splits the specified string into tokens, replacing the tokens of the previously tokenized string.
+     * @param s the string to be split into tokens
+     * @param toLowerCase if {@code true}, the tokens will be converted to lowercase
+     * @return this tokenizer
+     */
+    Tokenizer tokenize(CharSequence s, boolean toLowerCase) {
+        int length = s.length();
+        int position = 0;
+        boolean inToken = false;
+        count = 0;
+        for (int i = 0; i < length; ) {
+            int codePoint = Character.codePointAt(s, i);
+            i += Character.charCount(codePoint);
+            if (isWordCharacter(codePoint)) {
+                if (toLowerCase) {
+                    if (codePoint == '\u0130' || codePoint == '\u03A3') {
+                        return tokenizeSpecial(s);
+                    }
+                    codePoint = Character.toLowerCase(codePoint);
+                }
+                position = append(position, codePoint);
+                inToken = true;
+            } else if (inToken) {
+                endToken(position);
+                inToken = false;
+            }
+        }
+        if (inToken || count == 0) {
+            endToken(position);
+        }
+        return this;
+    }
+
+    // Converting the dotted capital I and the capital sigma to lowercase depends on the surrounding text, which
+    // String.toLowerCase() takes care of. Such strings are rare, so it is applied to the whole normalized string.
+    private Tokenizer tokenizeSpecial(CharSequence s) {
+        tokenize(s, false);
+        StringBuilder normalized = new StringBuilder(ends[count - 1] + count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(chars, start(i), end(i) - start(i));
+        }
+        String lowerCase = normalized.toString().toLowerCase(Locale.ROOT);
+        int position = 0;
+        count = 0;
+        for (int i = 0; i < lowerCase.length(); i++) {
+            char c = lowerCase.charAt(i);
+            if (c == ' ') {
+                endToken(position);
+            } else {
+                position = append(position, c);
+            }
+        }
+        endToken(position);
+        return this;
+    }
+
+    private int append(int position, int codePoint) {
+        if (position + 2 > chars.length) {
+            char[] grown = new char[2 * chars.length];
+            System.arraycopy(chars, 0, grown, 0, position);
+            chars = grown;
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+            chars[position++] = (char) codePoint;
+        } else {
+            chars[position++] = Character.highSurrogate(codePoint);
+            chars[position++] = Character.lowSurrogate(codePoint);
+        }
+        return position;
+    }
+
+    private void endToken(int position) {
+        if (count == ends.length) {
+            int[] grown = new int[2 * ends.length];
+            System.arraycopy(ends, 0, grown, 0, count);
+            ends = grown;
+        }
+        ends[count++] = position;
+    }
+
+    /**
+     * Returns the number of tokens.
+     * @return the number of tokens
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns the buffer holding the characters of the tokens. The buffer is only valid until the next call to
+     * {@link #tokenize(CharSequence, boolean)}.
+     * @return the buffer holding the characters of the tokens
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Returns the position in {@link #chars()} where the specified token starts.
+     * @param token the index of the token
+     * @return the position where the token starts
+     */
+    int start(int token) {
+        return token == 0 ? 0 : ends[token - 1];
+    }
+
+    /**
+     * Returns the position in {@link #chars()} where the specified token ends (exclusive).
+     * @param token the index of the token
+     * @return the position where the token ends
+     */
+    int end(int token) {
+        return ends[token];
+    }
+
+    /**
+     * Returns {@code true} if the specified tokens are equal.
+     * @param token1 the index of a token
+     * @param token2 the index of a token
+     * @return {@code true} if the tokens are equal
+     */
+    boolean equal(int token1, int token2) {
+        int start1 = start(token1);
+        int start2 = start(token2);
+        int length = end(token1) - start1;
+        if (end(token2) - start2 != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start1 + i] != chars[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the specified token as a string.
+     * @param token the index of the token
+     * @return the token
+     */
+    String token(int token) {
+        return new String(chars, start(token), end(token) - start(token));
+    }
+
+    /**
+     * Returns all tokens as strings.
+     * @return the tokens
+     */
+    String[] tokens() {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = token(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+/**
+ * A bounded collector of the {@code k} best scores, implemented as a binary min-heap over parallel arrays of scores
+ * and candidate indices. Candidates are ranked by score in descending order, and candidates with the same score
+ * by index in ascending order, which is the order in which a stable sort by descending score would put them.
+ * Collecting {@code n} scores takes {@code O(n log k)} time and {@code O(k)} memory. Each score can carry an item,
+ * e.g. the candidate itself when the candidates cannot be looked up by index.
+ * <p>
+ * Instances are not thread-safe.
+ * @param <T> the type of the items
+ */
+final class TopK<T> {
+
+    private final int[] scores;
+    private final int[] indices;
+    private final Object[] items;
+    private int size;
+
+    /**
+     * Creates a collector for the specified number of best scores.
+     * @param k the number of scores to keep
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    TopK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative.");
+        }
+        scores = new int[k];
+        indices = new int[k];
+        items = new Object[k];
+    }
+
+    /**
+     * Returns the number of collected scores.
+     * @return the number of collected scores
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the smallest score a candidate with an index greater than all indices offered so far needs to get
+     * into the collector, or {@link Integer#MIN_VALUE} if the collector is not full yet.
+     * @return the smallest score that can still get into the collector
+     */
+    int threshold() {
+        if (size < scores.length) {
+            return Integer.MIN_VALUE;
+        }
+        if (scores.length == 0) {
+            return Integer.MAX_VALUE;
+        }
+        // the worst collected score wins ties against any later candidate
+        return scores[0] == Integer.MAX_VALUE ? Integer.MAX_VALUE : scores[0] + 1;
+    }
+
+    /**
+     * Offers the score of a candidate to the collector.
+     * @param score the score of the candidate
+     * @param index the index of the candidate
+     */
+    void offer(int score, int index) {
+        offer(score, index, null);
+    }
+
+    /**
+     * Offers the score of a candidate to the collector, together with an item that is kept as long as the score is.
+     * @param score the score of the candidate
+     * @param index the index of the candidate
+     * @param item the item
+     */
+    void offer(int score, int index, T item) {
+        if (size < scores.length) {
+            scores[size] = score;
+            indices[size] = index;
+            items[size] = item;
+            siftUp(size++);
+        } else if (size > 0 && isWorse(scores[0], indices[0], score, index)) {
+            scores[0] = score;
+            indices[0] = index;
+            items[0] = item;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Removes all collected scores from the collector and returns the indices of the candidates, best first.
+     * The scores and the items can be read with {@link #score(int)} and {@link #item(int)} using the positions in
+     * the returned array until the next call to {@link #offer(int, int, Object)}.
+     * @return the indices of the collected candidates, best first
+     */
+    int[] drain() {
+        int count = size;
+        int[] sortedScores = new int[count];
+        int[] sortedIndices = new int[count];
+        Object[] sortedItems = new Object[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedScores[i] = scores[0];
+            sortedIndices[i] = indices[0];
+            sortedItems[i] = items[0];
+            size--;
+            scores[0] = scores[size];
+            indices[0] = indices[size];
+            items[0] = items[size];
+            items[size] = null;
+            siftDown(0);
+        }
+        System.arraycopy(sortedScores, 0, scores, 0, count);
+        System.arraycopy(sortedItems, 0, items, 0, count);
+        return sortedIndices;
+    }
+
+    /**
+     * Returns the score of the candidate at the specified position of the array returned by {@link #drain()}.
+     * @param position the position in the array returned by {@code drain()}
+     * @return the score of the candidate
+     */
+    int score(int position) {
+        return scores[position];
+    }
+
+    /**
+     * Returns the item of the candidate at the specified position of the array returned by {@link #drain()}.
+     * @param position the position in the array returned by {@code drain()}
+     * @return the item of the candidate
+     */
+    @SuppressWarnings("unchecked")
+    T item(int position) {
+        return (T) items[position];
+    }
+
+    // returns true if candidate 1 ranks below candidate 2
+    private static boolean isWorse(int score1, int index1, int score2, int index2) {
+        return score1 < score2 || (score1 == score2 && index1 > index2);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isWorse(scores[position], indices[position], scores[parent], indices[parent])) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int worst = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && isWorse(scores[left], indices[left], scores[worst], indices[worst])) {
+                worst = left;
+            }
+            if (right < size && isWorse(scores[right], indices[right], scores[worst], indices[worst])) {
+                worst = right;
+            }
+            if (worst == position) {
+                return;
+            }
+            swap(position, worst);
+            position = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+    }
+}
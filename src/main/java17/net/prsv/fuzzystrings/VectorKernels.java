@@ -0,0 +1,131 @@
+/*
+Copyright 2021-2023 Pavel Urusov
+This file is free software licensed under the terms of the MIT license.
+See LICENSE for details.
+ */
+
+package net.prsv.fuzzystrings;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels of {@link Kernels} implemented with the Vector API. Only part of the multi-release JAR for Java 17 and
+ * later, and only loaded if the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = LONGS.length();
+    // rotates the lanes of an int vector by one
+    private static final VectorShuffle<Integer> ROTATE = VectorShuffle.iota(INTS, 1, 1, true);
+
+    /**
+     * Computes the distances of up to {@link #LANES} ranges at once, one range per lane of a vector, with the
+     * single-word bit-parallel algorithm of {@link LevenshteinPattern}. Patterns longer than 64 characters are left
+     * to the scalar kernel. A lane keeps computing after the end of its range, but its score is no longer updated,
+     * and a group of ranges is abandoned as soon as none of them can end within its maximum distance.
+     */
+    @Override
+    void distances(LevenshteinPattern pattern, CharSequence text, int[] from, int[] to, int[] maxDistances,
+                   int count, int[] distances) {
+        int m = pattern.length();
+        if (m == 0 || m > 64 || count < 2) {
+            super.distances(pattern, text, from, to, maxDistances, count, distances);
+            return;
+        }
+        long[] eq = new long[LANES];
+        long[] lengths = new long[LANES];
+        long[] limits = new long[LANES];
+        LongVector last = LongVector.broadcast(LONGS, 1L << (m - 1));
+        for (int first = 0; first < count; first += LANES) {
+            int lanes = Math.min(LANES, count - first);
+            int longest = 0;
+            for (int lane = 0; lane < LANES; lane++) {
+                if (lane < lanes) {
+                    int i = first + lane;
+                    int length = to[i] - from[i];
+                    // same clamping as LevenshteinPattern.distance()
+                    lengths[lane] = length;
+                    limits[lane] = Math.min(maxDistances[i], Math.max(m, length));
+                    longest = Math.max(longest, length);
+                } else {
+                    // unused lanes are hopeless from the start
+                    lengths[lane] = 0;
+                    limits[lane] = -1;
+                }
+            }
+            LongVector length = LongVector.fromArray(LONGS, lengths, 0);
+            LongVector limit = LongVector.fromArray(LONGS, limits, 0);
+            LongVector vp = LongVector.broadcast(LONGS, -1L);
+            LongVector vn = LongVector.zero(LONGS);
+            LongVector score = LongVector.broadcast(LONGS, m);
+            for (int t = 0; t < longest; t++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    int i = first + lane;
+                    eq[lane] = t < lengths[lane] ? pattern.mask(text.charAt(from[i] + t), 0) : 0L;
+                }
+                LongVector e = LongVector.fromArray(LONGS, eq, 0);
+                LongVector xv = e.or(vn);
+                LongVector xh = e.and(vp).add(vp).lanewise(VectorOperators.XOR, vp).or(e);
+                LongVector hp = vn.or(xh.or(vp).not());
+                LongVector hn = vp.and(xh);
+                VectorMask<Long> active = length.compare(VectorOperators.GT, t);
+                score = score.add(1L, hp.and(last).compare(VectorOperators.NE, 0L).and(active));
+                score = score.sub(1L, hn.and(last).compare(VectorOperators.NE, 0L).and(active));
+                // every remaining column can lower the distance by at most one
+                LongVector remaining = length.sub(t + 1).max(0L);
+                if (score.sub(remaining).compare(VectorOperators.GT, limit).allTrue()) {
+                    break;
+                }
+                hp = hp.lanewise(VectorOperators.LSHL, 1).or(1L);
+                hn = hn.lanewise(VectorOperators.LSHL, 1);
+                vp = hn.or(xv.or(hp).not());
+                vn = hp.and(xv);
+            }
+            for (int lane = 0; lane < lanes; lane++) {
+                long distance = score.lane(lane);
+                // an abandoned lane has a lower bound on its distance that is already greater than its limit
+                distances[first + lane] = (int) (distance > limits[lane] ? limits[lane] + 1 : distance);
+            }
+        }
+    }
+
+    /**
+     * Counts the common values block by block: a block of each array is loaded into a vector, every value of one
+     * block is compared with every value of the other by rotating the second vector through all lanes, and the
+     * block with the smaller maximum is replaced with the next one. The values that do not fill a block are counted
+     * by the scalar merge.
+     */
+    @Override
+    int countCommon(int[] set1, int[] set2) {
+        int lanes = INTS.length();
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i + lanes <= set1.length && j + lanes <= set2.length) {
+            IntVector a = IntVector.fromArray(INTS, set1, i);
+            IntVector b = IntVector.fromArray(INTS, set2, j);
+            VectorMask<Integer> found = a.eq(b);
+            for (int r = 1; r < lanes; r++) {
+                b = b.rearrange(ROTATE);
+                found = found.or(a.eq(b));
+            }
+            common += found.trueCount();
+            int max1 = set1[i + lanes - 1];
+            int max2 = set2[j + lanes - 1];
+            if (max1 <= max2) {
+                i += lanes;
+            }
+            if (max2 <= max1) {
+                j += lanes;
+            }
+        }
+        return common + countCommon(set1, i, set2, j);
+    }
+}
@@ -0,0 +1,143 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncMatcherTest {
+
+    private static final List<String> candidates = new ArrayList<>();
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void setup() {
+        Random random = new Random(22);
+        String alphabet = "abcde fgh";
+        for (int i = 0; i < 3 * AsyncMatcher.CHUNK_SIZE + 17; i++) {
+            StringBuilder sb = new StringBuilder("q");
+            for (int j = random.nextInt(12); j > 0; j--) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            candidates.add(sb.toString());
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testCompleteResult() throws Exception {
+        FuzzyIndex index = FuzzyIndex.of(candidates);
+        for (int cutoff : new int[] {Integer.MIN_VALUE, 60}) {
+            PreparedString query = PreparedString.of("qabc fg", true);
+            MatchResult result = AsyncMatcher.matchAndSort(query, candidates, FuzzyStrings::complexRatio, cutoff,
+                    Duration.ofMinutes(1), executor).get(30, TimeUnit.SECONDS);
+            assertFalse(result.isPartial());
+            FuzzyIndexTest.assertSameMatches(
+                    FuzzyStrings.matchAndSort("qabc fg", candidates, FuzzyStrings::complexRatio, true, cutoff), result);
+            result = AsyncMatcher.matchAndSort("qabc fg", index, FuzzyStrings::ratioToken, false, cutoff,
+                    Duration.ofMinutes(1), executor).get(30, TimeUnit.SECONDS);
+            assertFalse(result.isPartial());
+            FuzzyIndexTest.assertSameMatches(index.matchAndSort("qabc fg", FuzzyStrings::ratioToken, false, cutoff),
+                    result);
+        }
+        MatchResult empty = AsyncMatcher.matchAndSort(PreparedString.of("q", false), new ArrayList<>(),
+                FuzzyStrings::ratio, 0, Duration.ofMinutes(1), executor).get(30, TimeUnit.SECONDS);
+        assertFalse(empty.isPartial());
+        assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    void testDeadline() throws Exception {
+        PreparedString query = PreparedString.of("qabc", false);
+        MatchResult expired = AsyncMatcher.matchAndSort(query, candidates, FuzzyStrings::ratio, 0, Duration.ZERO,
+                executor).get(30, TimeUnit.SECONDS);
+        assertTrue(expired.isPartial());
+        assertTrue(expired.isEmpty());
+        // a slow compare function that lets the deadline pass during the first chunk
+        PreparedCompareFunction slow = (s1, s2, scoreCutoff) -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return FuzzyStrings.ratio(s1, s2, scoreCutoff);
+        };
+        MatchResult partial = AsyncMatcher.matchAndSort(query, candidates, slow, Integer.MIN_VALUE,
+                Duration.ofMillis(200), executor).get(30, TimeUnit.SECONDS);
+        assertTrue(partial.isPartial());
+        // whole chunks have been scored, but not all of them; how many depends on when the task has started
+        assertEquals(0, partial.size() % AsyncMatcher.CHUNK_SIZE);
+        assertTrue(partial.size() < candidates.size());
+        FuzzyIndexTest.assertSameMatches(FuzzyStrings.matchAndSort("qabc", candidates.subList(0, partial.size()),
+                FuzzyStrings::ratio, false, Integer.MIN_VALUE), partial);
+    }
+
+    @Test
+    void testCancellation() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger compared = new AtomicInteger();
+        PreparedCompareFunction blocking = (s1, s2, scoreCutoff) -> {
+            if (compared.getAndIncrement() == 0) {
+                started.countDown();
+                try {
+                    cancelled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return FuzzyStrings.ratio(s1, s2, scoreCutoff);
+        };
+        try {
+            CompletableFuture<MatchResult> future = AsyncMatcher.matchAndSort(PreparedString.of("qabc", false),
+                    candidates, blocking, 0, Duration.ofMinutes(1), single);
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+            cancelled.countDown();
+        } finally {
+            single.shutdown();
+            assertTrue(single.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        // the chunk in progress has been finished, and no other chunk has been started
+        assertEquals(AsyncMatcher.CHUNK_SIZE, compared.get());
+    }
+
+    @Test
+    void testFailures() {
+        PreparedString query = PreparedString.of("qabc", false);
+        CompletableFuture<MatchResult> rejected = AsyncMatcher.matchAndSort(query, candidates, FuzzyStrings::ratio, 0,
+                Duration.ofMinutes(1), task -> {
+                    throw new RejectedExecutionException();
+                });
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        List<String> invalid = new ArrayList<>(candidates);
+        invalid.add(" ");
+        CompletableFuture<MatchResult> failed = AsyncMatcher.matchAndSort(query, invalid, FuzzyStrings::ratio, 0,
+                Duration.ofMinutes(1), Runnable::run);
+        e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        assertThrows(IllegalArgumentException.class, () -> AsyncMatcher.matchAndSort(" ", FuzzyIndex.of(candidates),
+                FuzzyStrings::ratio, false, 0, Duration.ofMinutes(1), executor));
+    }
+}
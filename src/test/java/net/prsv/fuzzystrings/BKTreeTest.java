@@ -0,0 +1,78 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BKTreeTest {
+
+    private static List<StringMatch> bruteForce(List<String> candidates, String query, boolean ignoreCase) {
+        List<StringMatch> result = new ArrayList<>();
+        String q = ignoreCase ? query.toLowerCase(Locale.ROOT) : query;
+        for (String candidate : candidates) {
+            String c = ignoreCase ? candidate.toLowerCase(Locale.ROOT) : candidate;
+            result.add(new StringMatch(LevenshteinPattern.distance(q, c), candidate));
+        }
+        // stable, so candidates at the same distance keep their positions
+        result.sort(null);
+        return result;
+    }
+
+    @Test
+    void testSameResultsAsBruteForce() {
+        String alphabet = "abcdAB";
+        Random random = new Random(12);
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 1 + random.nextInt(9); j > 0; j--) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            candidates.add(sb.toString());
+        }
+        for (boolean ignoreCase : new boolean[] {true, false}) {
+            BKTree tree = BKTree.of(candidates, ignoreCase);
+            for (int i = 0; i < 30; i++) {
+                String query = candidates.get(random.nextInt(candidates.size())) + alphabet.charAt(i % 4);
+                List<StringMatch> expected = bruteForce(candidates, query, ignoreCase);
+                for (int k = 0; k <= 3; k++) {
+                    int maxDistance = k;
+                    List<StringMatch> within = new ArrayList<>();
+                    expected.stream().filter(m -> m.getScore() <= maxDistance).forEach(within::add);
+                    BKTree.Result result = tree.withinDistance(query, k);
+                    FuzzyIndexTest.assertSameMatches(within, result.getMatches());
+                    assertTrue(result.getVisitedNodes() <= candidates.size());
+                }
+                for (int k : new int[] {0, 1, 5, 40}) {
+                    FuzzyIndexTest.assertSameMatches(expected.subList(0, k), tree.nearest(query, k).getMatches());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testPruning() {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            candidates.add("SKU-" + i);
+        }
+        BKTree tree = BKTree.of(candidates, false);
+        BKTree.Result result = tree.withinDistance("SKU-1234", 1);
+        assertEquals("SKU-1234", result.getMatches().get(0).getText());
+        assertEquals(0, result.getMatches().get(0).getScore());
+        assertTrue(result.getVisitedNodes() < candidates.size());
+        List<StringMatch> equal = BKTree.of(List.of("a", "b", "A"), true).withinDistance("a", 0).getMatches();
+        assertEquals(2, equal.size());
+        assertEquals("a", equal.get(0).getText());
+        assertEquals("A", equal.get(1).getText());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tree.withinDistance("SKU", -1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tree.nearest(" ", 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BKTree.of(List.of("a", " "), true));
+    }
+}
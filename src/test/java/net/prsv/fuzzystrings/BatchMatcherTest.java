@@ -0,0 +1,115 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchMatcherTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMappedLines() throws IOException {
+        Path file = directory.resolve("lines.txt");
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        String text = "first\r\nsecond line\n\nüñíçødé\n" + "x".repeat(100) + "\nlast";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] content = Arrays.copyOf(bom, bom.length + bytes.length);
+        System.arraycopy(bytes, 0, content, bom.length, bytes.length);
+        Files.write(file, content);
+        List<String> expected = Arrays.asList("first", "second line", "", "üñíçødé", "x".repeat(100), "last");
+        // windows smaller than the lines, and one larger than the file
+        for (int windowSize : new int[] {4, 7, 64, 1 << 20}) {
+            List<String> lines = new ArrayList<>();
+            try (MappedLines reader = new MappedLines(file, windowSize)) {
+                for (String line = reader.next(); line != null; line = reader.next()) {
+                    lines.add(line);
+                }
+            }
+            assertEquals(expected, lines, "window size " + windowSize);
+        }
+        Path empty = directory.resolve("empty.txt");
+        Files.write(empty, new byte[0]);
+        assertTrue(BatchMatcher.readLines(empty).isEmpty());
+    }
+
+    @Test
+    void testEscape() {
+        String plain = "no special characters";
+        assertSame(plain, BatchMatcher.escape(plain));
+        assertEquals("a\\tb\\\\c\\r", BatchMatcher.escape("a\tb\\c\r"));
+        // an escaped field never adds columns
+        assertEquals(3, ("query\t" + BatchMatcher.escape("tab\there") + "\t100").split("\t").length);
+    }
+
+    @Test
+    void testSameResultsAsIndex() throws IOException {
+        Random random = new Random(16);
+        String alphabet = "abcde fgh";
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            candidates.add(randomString(random, alphabet));
+        }
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < BatchMatcher.CHUNK_SIZE * 2 + 100; i++) {
+            queries.add(i % 1000 == 0 ? " " : randomString(random, alphabet));
+        }
+        Path candidateFile = directory.resolve("candidates.txt");
+        Path queryFile = directory.resolve("queries.txt");
+        Files.write(candidateFile, candidates, StandardCharsets.UTF_8);
+        Files.write(queryFile, queries, StandardCharsets.UTF_8);
+        FuzzyIndex index = FuzzyIndex.of(BatchMatcher.readLines(candidateFile));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int k : new int[] {1, 3}) {
+                BatchMatcher matcher = new BatchMatcher(index, FuzzyStrings::ratio, true, k, 60);
+                List<String> seen = new ArrayList<>();
+                long count = matcher.match(queryFile, (line, query, matches) -> {
+                    assertEquals(seen.size() + 1, line);
+                    seen.add(query);
+                    List<StringMatch> expected = new ArrayList<>();
+                    if (FuzzyStrings.isInvalid(query)) {
+                        assertTrue(matches.isEmpty());
+                        return;
+                    }
+                    if (k == 1) {
+                        // the same candidate as matchOne(), which returns the last of several equally good ones
+                        StringMatch match = index.matchOne(query, FuzzyStrings::ratio, true, 60);
+                        if (match.getScore() >= 0) {
+                            expected.add(match);
+                        }
+                    } else {
+                        expected = index.matchTopK(query, k, FuzzyStrings::ratio, true, 60);
+                    }
+                    FuzzyIndexTest.assertSameMatches(expected, matches);
+                }, pool);
+                assertEquals(queries.size(), count);
+                assertEquals(queries, seen);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchMatcher(index, FuzzyStrings::ratio, false, 0, 0));
+    }
+
+    private static String randomString(Random random, String alphabet) {
+        StringBuilder sb = new StringBuilder("q");
+        for (int j = random.nextInt(12); j > 0; j--) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
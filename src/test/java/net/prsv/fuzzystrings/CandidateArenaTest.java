@@ -0,0 +1,75 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CandidateArenaTest {
+
+    private static List<StringMatch> toStringMatches(IndexedMatches matches, List<String> candidates) {
+        List<StringMatch> result = new ArrayList<>();
+        for (int i = 0; i < matches.size(); i++) {
+            result.add(new StringMatch(matches.getScore(i), candidates.get(matches.getIndex(i))));
+        }
+        return result;
+    }
+
+    @Test
+    void testSameResultsAsRatio() {
+        // the dotted capital I gets longer when converted to lowercase
+        String alphabet = "abcdABCD İ";
+        Random random = new Random(17);
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            StringBuilder sb = new StringBuilder("x");
+            for (int j = random.nextInt(random.nextInt(10) == 0 ? 120 : 12); j > 0; j--) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            candidates.add(sb.toString());
+        }
+        for (boolean ignoreCase : new boolean[] {true, false}) {
+            for (boolean direct : new boolean[] {true, false}) {
+                CandidateArena arena = CandidateArena.of(candidates, ignoreCase, direct);
+                assertEquals(candidates.size(), arena.size());
+                assertEquals(direct, arena.isDirect());
+                assertEquals(FuzzyStrings.prepare(candidates.get(7), ignoreCase, false), arena.getText(7));
+                for (int q = 0; q < 40; q++) {
+                    String query = candidates.get(random.nextInt(candidates.size())) + (q % 2 == 0 ? "" : "ab");
+                    for (int cutoff : new int[] {Integer.MIN_VALUE, 0, 50, 80, 100}) {
+                        FuzzyIndexTest.assertSameMatches(
+                                FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratio, ignoreCase, cutoff),
+                                toStringMatches(arena.matchAndSort(query, cutoff), candidates));
+                        FuzzyIndexTest.assertSameMatches(
+                                FuzzyStrings.matchTopK(query, candidates, 5, FuzzyStrings::ratio, ignoreCase, cutoff),
+                                toStringMatches(arena.matchTopK(query, 5, cutoff), candidates));
+                        StringMatch expected =
+                                FuzzyStrings.matchOne(query, candidates, FuzzyStrings::ratio, ignoreCase, cutoff);
+                        IndexedMatches actual = arena.matchOne(query, cutoff);
+                        if (expected.getText().isEmpty()) {
+                            assertEquals(0, actual.size());
+                        } else {
+                            assertEquals(1, actual.size());
+                            assertEquals(expected.getScore(), actual.getScore(0));
+                            assertEquals(expected.getText(), candidates.get(actual.getIndex(0)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNoMatch() {
+        CandidateArena arena = CandidateArena.of(Arrays.asList("apple", "banana"), false);
+        assertEquals(0, arena.matchOne("cherry", 90).size());
+        assertEquals(0, arena.matchAndSort("cherry", 90).size());
+        assertThrows(IndexOutOfBoundsException.class, () -> arena.matchOne("cherry", 90).getIndex(0));
+        assertThrows(IllegalArgumentException.class, () -> arena.matchOne(" ", 0));
+        assertThrows(IllegalArgumentException.class, () -> CandidateArena.of(Arrays.asList("a", ""), true));
+    }
+}
@@ -0,0 +1,129 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentFuzzyIndexTest {
+
+    private static final String ALPHABET = "abcdeABC İ";
+
+    private static String randomString(Random random) {
+        StringBuilder sb = new StringBuilder("x");
+        for (int j = random.nextInt(10); j > 0; j--) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameResults(List<String> expected, ConcurrentFuzzyIndex index, String query) {
+        for (boolean ignoreCase : new boolean[] {true, false}) {
+            FuzzyIndexTest.assertSameMatches(
+                    FuzzyStrings.matchAndSort(query, expected, FuzzyStrings::complexRatio, ignoreCase),
+                    index.matchAndSort(query, FuzzyStrings::complexRatio, ignoreCase));
+            FuzzyIndexTest.assertSameMatches(
+                    FuzzyStrings.matchTopK(query, expected, 3, FuzzyStrings::ratioToken, ignoreCase, 50),
+                    index.matchTopK(query, 3, FuzzyStrings::ratioToken, ignoreCase, 50));
+            StringMatch expectedMatch = FuzzyStrings.matchOne(query, expected, FuzzyStrings::ratio, ignoreCase, 60);
+            StringMatch actualMatch = index.matchOne(query, FuzzyStrings::ratio, ignoreCase, 60);
+            assertEquals(expectedMatch.getScore(), actualMatch.getScore());
+            assertEquals(expectedMatch.getText(), actualMatch.getText());
+        }
+    }
+
+    @Test
+    void testSameResultsAsList() {
+        Random random = new Random(19);
+        // merges run synchronously, right after the change that triggers them
+        ConcurrentFuzzyIndex index = new ConcurrentFuzzyIndex(8, Runnable::run);
+        List<String> expected = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                String s = randomString(random);
+                index.add(s);
+                expected.add(s);
+            } else if (operation < 9) {
+                String s = expected.isEmpty() || random.nextInt(4) == 0 ? randomString(random)
+                        : expected.get(random.nextInt(expected.size()));
+                assertEquals(expected.contains(s), index.remove(s));
+                expected.removeIf(s::equals);
+            } else {
+                List<String> batch = Arrays.asList(randomString(random), randomString(random), randomString(random));
+                index.addAll(batch);
+                expected.addAll(batch);
+            }
+            assertEquals(expected.size(), index.size());
+            if (step % 100 == 0) {
+                assertEquals(expected, index.getCandidates());
+                assertSameResults(expected, index, randomString(random));
+            }
+        }
+        assertEquals(expected, index.getCandidates());
+        assertSameResults(expected, index, randomString(random));
+        // merging keeps the number of segments logarithmic in the number of candidates
+        assertTrue(index.getSegmentCount() <= 2 * (32 - Integer.numberOfLeadingZeros(expected.size())),
+                "segments: " + index.getSegmentCount());
+    }
+
+    @Test
+    void testConcurrentReadersAndWriters() throws Exception {
+        ExecutorService mergeExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        ConcurrentFuzzyIndex index = new ConcurrentFuzzyIndex(16, mergeExecutor);
+        Set<String> added = ConcurrentHashMap.newKeySet();
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(threads.submit(() -> {
+                    while (!done.get()) {
+                        for (StringMatch match : index.matchAndSort("item 42", FuzzyStrings::complexRatio, true)) {
+                            assertTrue(added.contains(match.getText()));
+                        }
+                        index.matchTopK("item 7", 5, FuzzyStrings::ratio, false);
+                    }
+                }));
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String s = "item " + i;
+                added.add(s);
+                index.add(s);
+                expected.add(s);
+                if (i % 3 == 0) {
+                    String removed = "item " + (i / 2);
+                    index.remove(removed);
+                    expected.remove(removed);
+                }
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(expected, index.getCandidates());
+            assertSameResults(expected, index, "item 1234");
+        } finally {
+            done.set(true);
+            threads.shutdown();
+            mergeExecutor.shutdown();
+            assertTrue(mergeExecutor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.add(" "));
+        assertThrows(IllegalArgumentException.class, () -> index.matchOne("", FuzzyStrings::ratio, true));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentFuzzyIndex(0, Runnable::run));
+        assertFalse(index.remove(null));
+    }
+}
@@ -0,0 +1,143 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzyIndexTest {
+
+    private static final String[] queries = {"A quick brown fox jumped over the lazy dog", "the LAZY dog",
+            "quick brown fox", "Σίσυφος ΣΟΦΟΣ"};
+    private static final List<String> candidates = new ArrayList<>();
+    private static FuzzyIndex index;
+
+    @BeforeAll
+    static void setup() {
+        candidates.add("A quick brown fox jumped over the lazy dogs");
+        candidates.add("A quick brown fox jumps over the lazy dog");
+        candidates.add("a quick brown fox jumped over the lazy dog");
+        candidates.add("A quick brown fox jumped over the lazy cat");
+        candidates.add("A quick brown fox jumped over the crazy bat");
+        candidates.add("the lazy dog");
+        candidates.add("The Lazy Dog!");
+        candidates.add("brown fox, quick");
+        candidates.add("σίσυφος σοφος");
+        candidates.add("ΣΊΣΥΦΟΣ");
+        index = FuzzyIndex.of(candidates);
+    }
+
+    static void assertSameMatches(List<StringMatch> expected, List<StringMatch> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getText(), actual.get(i).getText());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+        }
+    }
+
+    @Test
+    void testMatchOne() {
+        for (String query : queries) {
+            for (boolean ignoreCase : new boolean[] {true, false}) {
+                StringMatch expected = FuzzyStrings.matchOne(query, candidates, FuzzyStrings::complexRatio, ignoreCase);
+                StringMatch actual = index.matchOne(query, FuzzyStrings::complexRatio, ignoreCase);
+                assertEquals(expected.getText(), actual.getText());
+                assertEquals(expected.getScore(), actual.getScore());
+            }
+        }
+    }
+
+    @Test
+    void testMatchAndSort() {
+        for (String query : queries) {
+            for (boolean ignoreCase : new boolean[] {true, false}) {
+                assertSameMatches(FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratio, ignoreCase),
+                        index.matchAndSort(query, FuzzyStrings::ratio, ignoreCase));
+                assertSameMatches(FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratioToken, ignoreCase),
+                        index.matchAndSort(query, FuzzyStrings::ratioToken, ignoreCase));
+                assertSameMatches(FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratioTokenSet,
+                        ignoreCase, 60), index.matchAndSort(query, FuzzyStrings::ratioTokenSet, ignoreCase, 60));
+            }
+        }
+    }
+
+    @Test
+    void testMatchTopK() {
+        for (String query : queries) {
+            for (boolean ignoreCase : new boolean[] {true, false}) {
+                List<StringMatch> all = index.matchAndSort(query, FuzzyStrings::complexRatio, ignoreCase);
+                for (int k = 0; k <= candidates.size() + 1; k++) {
+                    assertSameMatches(all.subList(0, Math.min(k, all.size())),
+                            index.matchTopK(query, k, FuzzyStrings::complexRatio, ignoreCase));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testThrows() {
+        List<String> invalid = new ArrayList<>(candidates);
+        invalid.add("   ");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FuzzyIndex.of(invalid));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> index.matchOne("", FuzzyStrings::ratio, false));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> index.matchTopK("test", -1, FuzzyStrings::ratio, false));
+    }
+
+    @Test
+    void testSnapshot(@TempDir Path directory) throws IOException {
+        List<String> snapshotCandidates = new ArrayList<>(candidates);
+        // the dotted capital I gets longer when converted to lowercase
+        snapshotCandidates.add("İstanbul Airport");
+        FuzzyIndex original = FuzzyIndex.of(snapshotCandidates);
+        Path file = directory.resolve("index.fzix");
+        original.writeSnapshot(file);
+        FuzzyIndex restored = FuzzyIndex.openSnapshot(file);
+        assertEquals(original.size(), restored.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.get(i), restored.get(i));
+        }
+        List<String> snapshotQueries = new ArrayList<>(List.of(queries));
+        snapshotQueries.add("istanbul airport");
+        snapshotQueries.add("a brand new token");
+        for (String query : snapshotQueries) {
+            for (boolean ignoreCase : new boolean[] {true, false}) {
+                for (PreparedCompareFunction compareFunction : new PreparedCompareFunction[] {FuzzyStrings::ratio,
+                        FuzzyStrings::ratioToken, FuzzyStrings::ratioTokenSet, FuzzyStrings::complexRatio}) {
+                    assertSameMatches(original.matchAndSort(query, compareFunction, ignoreCase),
+                            restored.matchAndSort(query, compareFunction, ignoreCase));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCorruptedSnapshot(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("index.fzix");
+        index.writeSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] corrupted = bytes.clone();
+        corrupted[bytes.length / 2] ^= 1;
+        Files.write(file, corrupted);
+        assertThrows(IOException.class, () -> FuzzyIndex.openSnapshot(file));
+        byte[] otherVersion = bytes.clone();
+        otherVersion[7] = (byte) (IndexSnapshot.VERSION + 1);
+        Files.write(file, otherVersion);
+        IOException e = assertThrows(IOException.class, () -> FuzzyIndex.openSnapshot(file));
+        assertTrue(e.getMessage().contains("version"));
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> FuzzyIndex.openSnapshot(file));
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> FuzzyIndex.openSnapshot(file));
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -134,6 +136,160 @@ public class FuzzyStringsTest {
     }
 
 
+    @Test
+    void testMatchOneWithCutoff() {
+        StringMatch match = FuzzyStrings.matchOne(testString, candidates, FuzzyStrings::ratio, false, 90);
+        assertEquals("A quick brown fox jumped over the lazy dogs", match.getText());
+        assertEquals(99, match.getScore());
+
+        match = FuzzyStrings.matchOne("something else entirely", candidates, FuzzyStrings::ratio, false, 90);
+        assertEquals(-1, match.getScore());
+        assertEquals("", match.getText());
+    }
+
+    @Test
+    void testMatchAndSortWithCutoff() {
+        List<StringMatch> all = FuzzyStrings.matchAndSort(testString, candidates, FuzzyStrings::complexRatio, false);
+        List<StringMatch> matches = FuzzyStrings.matchAndSort(testString, candidates, FuzzyStrings::complexRatio,
+                false, 95);
+        int expected = 0;
+        for (StringMatch match : all) {
+            if (match.getScore() >= 95) {
+                assertEquals(match.getText(), matches.get(expected).getText());
+                assertEquals(match.getScore(), matches.get(expected).getScore());
+                expected++;
+            }
+        }
+        assertEquals(expected, matches.size());
+    }
+
+    @Test
+    void testCutoffDoesNotChangeScores() {
+        String[] strings = {testString, "A quick brown fox", "a QUICK brown fox jumped", "over the lazy dog",
+                "Jumped over the lazy dog, a quick brown fox", "the quick brown fox jumps over the lazy dog"};
+        for (String s1 : strings) {
+            for (String s2 : strings) {
+                for (int cutoff = 0; cutoff <= 101; cutoff += 7) {
+                    for (boolean ignoreCase : new boolean[] {true, false}) {
+                        int ratio = FuzzyStrings.ratio(s1, s2, ignoreCase);
+                        assertEquals(ratio >= cutoff ? ratio : 0, FuzzyStrings.ratio(s1, s2, ignoreCase, cutoff));
+                        int tokenRatio = FuzzyStrings.ratioToken(s1, s2, ignoreCase);
+                        assertEquals(tokenRatio >= cutoff ? tokenRatio : 0,
+                                FuzzyStrings.ratioToken(s1, s2, ignoreCase, cutoff));
+                        int complexRatio = FuzzyStrings.complexRatio(s1, s2, ignoreCase);
+                        assertEquals(complexRatio >= cutoff ? complexRatio : 0,
+                                FuzzyStrings.complexRatio(s1, s2, ignoreCase, cutoff));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testPreparedScoresMatchStringScores() {
+        String[] strings = {testString, "A quick brown fox", "a QUICK brown fox jumped", "over the lazy dog!",
+                "Jumped over the lazy dog, a quick brown fox", "the quick brown fox jumps over the lazy dog",
+                testString + " " + testString + " and then it went home to have a very long rest"};
+        for (String s1 : strings) {
+            for (boolean ignoreCase : new boolean[] {true, false}) {
+                PreparedString query = PreparedString.of(s1, ignoreCase);
+                for (String s2 : strings) {
+                    PreparedString candidate = PreparedString.of(s2, ignoreCase);
+                    for (int cutoff : new int[] {Integer.MIN_VALUE, 50, 80, 95}) {
+                        assertEquals(FuzzyStrings.ratio(s1, s2, ignoreCase, cutoff),
+                                FuzzyStrings.ratio(query, candidate, cutoff));
+                        assertEquals(FuzzyStrings.ratioToken(s1, s2, ignoreCase, cutoff),
+                                FuzzyStrings.ratioToken(query, candidate, cutoff));
+                        assertEquals(FuzzyStrings.ratioTokenSet(s1, s2, ignoreCase, cutoff),
+                                FuzzyStrings.ratioTokenSet(query, candidate, cutoff));
+                        assertEquals(FuzzyStrings.complexRatio(s1, s2, ignoreCase, cutoff),
+                                FuzzyStrings.complexRatio(query, candidate, cutoff));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testPreparedMatchOneAndMatchAndSort() {
+        PreparedString query = PreparedString.of(testString, false);
+        StringMatch match = FuzzyStrings.matchOne(query, candidates, FuzzyStrings::complexRatio);
+        StringMatch expected = FuzzyStrings.matchOne(testString, candidates, FuzzyStrings::complexRatio, false);
+        assertEquals(expected.getText(), match.getText());
+        assertEquals(expected.getScore(), match.getScore());
+
+        List<StringMatch> matches = FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratioToken);
+        List<StringMatch> expectedMatches = FuzzyStrings.matchAndSort(testString, candidates,
+                FuzzyStrings::ratioToken, false);
+        assertEquals(expectedMatches.size(), matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            assertEquals(expectedMatches.get(i).getText(), matches.get(i).getText());
+            assertEquals(expectedMatches.get(i).getScore(), matches.get(i).getScore());
+        }
+    }
+
+    @Test
+    void testPreparedStringThrows() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PreparedString.of(null, false));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PreparedString.of("   ", false));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FuzzyStrings.ratio(PreparedString.of(testString, true), PreparedString.of(testString, false), 0));
+    }
+
+    @Test
+    void testMatchTopK() {
+        String[] queries = {"A quick brown fox jumped over the lazy dog", "the lazy dog", "brown fox"};
+        for (String query : queries) {
+            PreparedString prepared = PreparedString.of(query, true);
+            List<StringMatch> all = FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratioToken, true);
+            List<StringMatch> above = FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratio, true, 60);
+            for (int k = 0; k <= candidates.size() + 1; k++) {
+                FuzzyIndexTest.assertSameMatches(all.subList(0, Math.min(k, all.size())),
+                        FuzzyStrings.matchTopK(query, candidates, k, FuzzyStrings::ratioToken, true));
+                FuzzyIndexTest.assertSameMatches(all.subList(0, Math.min(k, all.size())),
+                        FuzzyStrings.matchTopK(prepared, candidates, k, FuzzyStrings::ratioToken));
+                FuzzyIndexTest.assertSameMatches(above.subList(0, Math.min(k, above.size())),
+                        FuzzyStrings.matchTopK(query, candidates, k, FuzzyStrings::ratio, true, 60));
+                FuzzyIndexTest.assertSameMatches(above.subList(0, Math.min(k, above.size())),
+                        FuzzyStrings.matchTopK(prepared, candidates, k, FuzzyStrings::ratio, 60));
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FuzzyStrings.matchTopK("test", candidates, -1, FuzzyStrings::ratio, false));
+    }
+
+    @Test
+    void testParallelMatchOneAndMatchAndSort() {
+        String[] words = {"quick", "brown", "fox", "jumped", "over", "the", "lazy", "dog"};
+        Random random = new Random(1);
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 3 * ParallelMatch.SEQUENTIAL_THRESHOLD; i++) {
+            StringBuilder sb = new StringBuilder(String.valueOf(i % 7));
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                sb.append(' ').append(words[random.nextInt(words.length)]);
+            }
+            many.add(sb.toString());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String query : new String[] {"the lazy fox", "1 quick dog"}) {
+                for (StringCompareFunction compareFunction : new StringCompareFunction[] {FuzzyStrings::ratio,
+                        FuzzyStrings::ratioTokenSet}) {
+                    StringMatch expected = FuzzyStrings.matchOne(query, many, compareFunction, true);
+                    StringMatch actual = FuzzyStrings.parallelMatchOne(query, many, compareFunction, true, pool);
+                    assertEquals(expected.getText(), actual.getText());
+                    assertEquals(expected.getScore(), actual.getScore());
+                    FuzzyIndexTest.assertSameMatches(FuzzyStrings.matchAndSort(query, many, compareFunction, true),
+                            FuzzyStrings.parallelMatchAndSort(query, many, compareFunction, true, pool));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(FuzzyStrings.matchOne("fox", candidates, FuzzyStrings::ratio, false).getText(),
+                FuzzyStrings.parallelMatchOne("fox", candidates, FuzzyStrings::ratio, false).getText());
+    }
+
     @Test
     void testComplexRatioExactMatch() {
         String candidate = new String(testString);
@@ -161,4 +317,40 @@ public class FuzzyStringsTest {
         Assertions.assertThrows(IllegalArgumentException.class,
                 () -> FuzzyStrings.complexRatio(testString, "", false));
     }
+
+    @Test
+    void testPartialRatio() {
+        assertEquals(100, FuzzyStrings.partialRatio("Acme", "Acme Widget 3000 (blue)", false));
+        assertEquals(100, FuzzyStrings.partialRatio("Acme Widget 3000 (blue)", "acme", true));
+        assertNotEquals(100, FuzzyStrings.partialRatio("Acme Widget 3000 (blue)", "acme", false));
+        // "Acne" within the title: one substitution in four characters
+        assertEquals(88, FuzzyStrings.partialRatio("Acne", "Acme Widget 3000 (blue)"));
+        assertTrue(FuzzyStrings.partialRatio("Acme", "Acme Widget 3000 (blue)", false)
+                > FuzzyStrings.ratio("Acme", "Acme Widget 3000 (blue)", false));
+        String[] strings = {testString, "brown fox", "a QUICK brown fox jumped", "over the lazy dog!", "lazy cat",
+                "Jumped over the lazy dog, a quick brown fox", testString + " " + testString + " and then some more"};
+        for (String s1 : strings) {
+            for (String s2 : strings) {
+                for (boolean ignoreCase : new boolean[] {true, false}) {
+                    int partialRatio = FuzzyStrings.partialRatio(s1, s2, ignoreCase);
+                    assertEquals(partialRatio, FuzzyStrings.partialRatio(s2, s1, ignoreCase));
+                    PreparedString query = PreparedString.of(s1, ignoreCase);
+                    PreparedString candidate = PreparedString.of(s2, ignoreCase);
+                    for (int cutoff = 0; cutoff <= 101; cutoff += 7) {
+                        int expected = partialRatio >= cutoff ? partialRatio : 0;
+                        assertEquals(expected, FuzzyStrings.partialRatio(s1, s2, ignoreCase, cutoff));
+                        assertEquals(expected, FuzzyStrings.partialRatio(query, candidate, cutoff));
+                    }
+                }
+            }
+        }
+        StringMatch match = FuzzyStrings.matchOne("lazy cat", candidates, FuzzyStrings::partialRatio, true);
+        assertEquals("A quick brown fox jumped over the lazy cat", match.getText());
+        assertEquals(100, match.getScore());
+        List<StringMatch> matches = FuzzyStrings.matchAndSort("lazy dog", candidates, FuzzyStrings::partialRatio,
+                false, 100);
+        assertEquals(2, matches.size());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FuzzyStrings.partialRatio(testString, " ", false));
+    }
 }
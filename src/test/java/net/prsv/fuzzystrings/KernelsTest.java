@@ -0,0 +1,81 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KernelsTest {
+
+    private static final Kernels SCALAR = new Kernels();
+
+    @Test
+    void testVectorKernelsLoaded() {
+        boolean vectorApi = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean disabled = "false".equals(System.getProperty("net.prsv.fuzzystrings.vector"));
+        if (vectorApi && !disabled) {
+            assertEquals("net.prsv.fuzzystrings.VectorKernels", Kernels.INSTANCE.getClass().getName());
+        } else {
+            assertEquals(Kernels.class, Kernels.INSTANCE.getClass());
+        }
+    }
+
+    @Test
+    void testDistances() {
+        Random random = new Random(20);
+        String alphabet = "abcdé Ωx";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        int[] from = new int[50];
+        int[] to = new int[50];
+        int[] maxDistances = new int[50];
+        int[] expected = new int[50];
+        int[] actual = new int[50];
+        for (int round = 0; round < 300; round++) {
+            int patternLength = random.nextInt(round % 10 == 0 ? 150 : 65);
+            int patternFrom = random.nextInt(text.length() - patternLength);
+            LevenshteinPattern pattern = new LevenshteinPattern(text, patternFrom, patternFrom + patternLength);
+            int count = random.nextInt(from.length + 1);
+            for (int i = 0; i < count; i++) {
+                int length = random.nextInt(80);
+                from[i] = random.nextInt(text.length() - length);
+                to[i] = from[i] + length;
+                // some ranges are copies of the pattern, so that some distances are small
+                if (random.nextInt(4) == 0 && patternLength > 0) {
+                    from[i] = patternFrom + random.nextInt(3);
+                    to[i] = Math.max(from[i], patternFrom + patternLength - random.nextInt(3));
+                }
+                maxDistances[i] = random.nextInt(6) == 0 ? Integer.MAX_VALUE : random.nextInt(60) - 2;
+            }
+            SCALAR.distances(pattern, text, from, to, maxDistances, count, expected);
+            Kernels.INSTANCE.distances(pattern, text, from, to, maxDistances, count, actual);
+            assertArrayEquals(Arrays.copyOf(expected, count), Arrays.copyOf(actual, count), "round " + round);
+        }
+    }
+
+    @Test
+    void testCountCommon() {
+        Random random = new Random(21);
+        for (int round = 0; round < 2000; round++) {
+            int[] set1 = randomSet(random);
+            int[] set2 = randomSet(random);
+            int expected = 0;
+            for (int value : set1) {
+                if (Arrays.binarySearch(set2, value) >= 0) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, SCALAR.countCommon(set1, set2));
+            assertEquals(expected, Kernels.INSTANCE.countCommon(set1, set2));
+        }
+    }
+
+    private static int[] randomSet(Random random) {
+        int[] values = random.ints(random.nextInt(40), 0, 60).toArray();
+        return Arrays.stream(values).sorted().distinct().toArray();
+    }
+}
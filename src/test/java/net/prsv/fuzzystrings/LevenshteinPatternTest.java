@@ -0,0 +1,114 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevenshteinPatternTest {
+
+    private static final String ALPHABET = "abcdeABCDE áéиж ";
+
+    // the textbook dynamic programming implementation, used as a reference
+    static int referenceDistance(String s1, String s2) {
+        int[][] distance = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++) {
+            distance[i][0] = i;
+        }
+        for (int j = 0; j <= s2.length(); j++) {
+            distance[0][j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                distance[i][j] = Math.min(Math.min(distance[i - 1][j] + 1, distance[i][j - 1] + 1),
+                        distance[i - 1][j - 1] + cost);
+            }
+        }
+        return distance[s1.length()][s2.length()];
+    }
+
+    static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testKnownDistances() {
+        assertEquals(3, LevenshteinPattern.distance("kitten", "sitting"));
+        assertEquals(0, LevenshteinPattern.distance("same", "same"));
+        assertEquals(4, LevenshteinPattern.distance("", "four"));
+        assertEquals(4, LevenshteinPattern.distance("four", ""));
+        assertEquals(1, LevenshteinPattern.distance("ёлка", "елка"));
+    }
+
+    @Test
+    void testMatchesReferenceOnRandomStrings() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            // cover single-word patterns as well as patterns spanning several blocks
+            String s1 = randomString(random, random.nextInt(200));
+            String s2 = randomString(random, random.nextInt(200));
+            assertEquals(referenceDistance(s1, s2), LevenshteinPattern.distance(s1, s2),
+                    "distance between \"" + s1 + "\" and \"" + s2 + "\"");
+        }
+    }
+
+    @Test
+    void testBlockBoundaries() {
+        Random random = new Random(2);
+        for (int length : new int[] {63, 64, 65, 127, 128, 129, 500}) {
+            String s1 = randomString(random, length);
+            String s2 = randomString(random, length + random.nextInt(3) - 1);
+            LevenshteinPattern pattern = new LevenshteinPattern(s1);
+            assertEquals(referenceDistance(s1, s2), pattern.distance(s2), "pattern length " + length);
+        }
+    }
+
+    @Test
+    void testBoundedDistance() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            // long strings with a small maximum take the banded path, the others the bit-parallel one
+            String s1 = randomString(random, random.nextInt(300));
+            String s2 = random.nextBoolean() ? randomString(random, random.nextInt(300))
+                    : s1.substring(0, s1.length() / 2) + randomString(random, random.nextInt(5)) + s1.substring(s1.length() / 2);
+            int maxDistance = random.nextInt(40);
+            int expected = referenceDistance(s1, s2);
+            int actual = LevenshteinPattern.distance(s1, s2, maxDistance);
+            if (expected <= maxDistance) {
+                assertEquals(expected, actual);
+            } else {
+                assertEquals(maxDistance + 1, actual);
+            }
+        }
+    }
+
+    @Test
+    void testSearchDistance() {
+        Random random = new Random(4);
+        for (int i = 0; i < 500; i++) {
+            String text = randomString(random, random.nextInt(120));
+            String pattern = random.nextBoolean() || text.isEmpty() ? randomString(random, random.nextInt(90))
+                    : text.substring(random.nextInt(text.length())) + randomString(random, random.nextInt(3));
+            // the best alignment of the pattern with any substring of the text, by brute force
+            int expected = pattern.length();
+            for (int from = 0; from <= text.length(); from++) {
+                for (int to = from; to <= text.length(); to++) {
+                    expected = Math.min(expected, referenceDistance(pattern, text.substring(from, to)));
+                }
+            }
+            LevenshteinPattern prepared = new LevenshteinPattern(pattern);
+            assertEquals(expected, prepared.searchDistance(text, 0, text.length(), Integer.MAX_VALUE));
+            int maxDistance = random.nextInt(20);
+            assertEquals(Math.min(expected, maxDistance + 1),
+                    prepared.searchDistance(text, 0, text.length(), maxDistance));
+        }
+        assertEquals(0, new LevenshteinPattern("fox").searchDistance("the quick brown fox", 0, 19, 10));
+        assertEquals(1, new LevenshteinPattern("fix").searchDistance("the quick brown fox", 0, 19, 10));
+    }
+}
@@ -0,0 +1,110 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchCacheTest {
+
+    private static final List<String> CANDIDATES = Arrays.asList("Acme Corp", "Globex Corporation", "Initech",
+            "Umbrella Corp", "Hooli", "Vehement Capital Partners", "Massive Dynamic");
+
+    @Test
+    void testSameResultsAsUncached() {
+        MatchCache cache = new MatchCache(100);
+        FuzzyIndex index = FuzzyIndex.of(CANDIDATES);
+        StringCompareFunction scorer = FuzzyStrings::complexRatio;
+        PreparedCompareFunction preparedScorer = FuzzyStrings::complexRatio;
+        for (int round = 0; round < 2; round++) {
+            for (String query : new String[] {"acme", "GLOBEX corp", "umbrela"}) {
+                for (boolean ignoreCase : new boolean[] {true, false}) {
+                    StringMatch expected = FuzzyStrings.matchOne(query, CANDIDATES, scorer, ignoreCase);
+                    StringMatch actual = cache.matchOne(query, CANDIDATES, scorer, ignoreCase);
+                    assertEquals(expected.getScore(), actual.getScore());
+                    assertEquals(expected.getText(), actual.getText());
+                    FuzzyIndexTest.assertSameMatches(
+                            FuzzyStrings.matchAndSort(query, CANDIDATES, scorer, ignoreCase),
+                            cache.matchAndSort(query, CANDIDATES, scorer, ignoreCase));
+                    FuzzyIndexTest.assertSameMatches(index.matchAndSort(query, preparedScorer, ignoreCase),
+                            cache.matchAndSort(query, index, preparedScorer, ignoreCase));
+                }
+            }
+        }
+        assertEquals(18, cache.getMissCount());
+        assertEquals(18, cache.getHitCount());
+        assertEquals(18, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void testKeys() {
+        MatchCache cache = new MatchCache(100);
+        StringCompareFunction scorer = FuzzyStrings::ratio;
+        cache.matchOne("ACME corp", CANDIDATES, scorer, true);
+        // differences in case are ignored
+        cache.matchOne("acme CORP", CANDIDATES, scorer, true);
+        assertEquals(1, cache.getHitCount());
+        // but not here
+        cache.matchOne("acme CORP", CANDIDATES, scorer, false);
+        // another compare function, another collection, another method
+        cache.matchOne("acme CORP", CANDIDATES, FuzzyStrings::ratioToken, true);
+        cache.matchOne("acme CORP", new ArrayList<>(CANDIDATES), scorer, true);
+        cache.matchAndSort("acme CORP", CANDIDATES, scorer, true);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        cache.matchOne("ACME corp", CANDIDATES, scorer, true);
+        assertEquals(6, cache.getMissCount());
+        assertThrows(IllegalArgumentException.class, () -> new MatchCache(0));
+    }
+
+    @Test
+    void testEviction() {
+        MatchCache cache = new MatchCache(40);
+        StringCompareFunction scorer = FuzzyStrings::ratio;
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            String query = "query " + (i % 100);
+            StringMatch expected = FuzzyStrings.matchOne(query, CANDIDATES, scorer, false);
+            StringMatch actual = cache.matchOne(query, CANDIDATES, scorer, false);
+            assertEquals(expected.getScore(), actual.getScore());
+            assertEquals(expected.getText(), actual.getText());
+        });
+        assertTrue(cache.size() <= 40);
+        assertEquals(1000, cache.getHitCount() + cache.getMissCount());
+        // a result missed by several threads at once replaces itself instead of evicting another one
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.getEvictionCount() <= cache.getMissCount() - cache.size());
+    }
+
+    @Test
+    void testCollectedCandidates() throws InterruptedException {
+        MatchCache cache = new MatchCache(100);
+        StringCompareFunction scorer = FuzzyStrings::ratio;
+        List<String> candidates = new ArrayList<>(CANDIDATES);
+        cache.matchAndSort("acme", candidates, scorer, false);
+        cache.matchOne("acme", CANDIDATES, scorer, false);
+        assertEquals(2, cache.size());
+        WeakReference<List<String>> reference = new WeakReference<>(candidates);
+        candidates = null;
+        // the cache must not keep the collection alive
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        // the results of the collected collection are removed by the next lookup, the others stay
+        for (int i = 0; i < 100 && cache.size() > 1; i++) {
+            cache.matchOne("acme", CANDIDATES, scorer, false);
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.size());
+        assertTrue(cache.getHitCount() > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchStatsTest {
+
+    private static final List<String> CANDIDATES = Arrays.asList("apple", "apples", "application", "maple", "snapple",
+            "a very long candidate that cannot possibly match", "APPLE pie", "pineapple", "grape");
+
+    private final List<MatchStats> recorded = new ArrayList<>();
+
+    @AfterEach
+    void removeListener() {
+        FuzzyStrings.setMatchListener(null);
+    }
+
+    private static int scored(MatchStats stats) {
+        int count = 0;
+        for (int score = 0; score <= 100; score++) {
+            count += stats.getScoreCount(score);
+        }
+        return count;
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        assertNull(FuzzyStrings.getMatchListener());
+        FuzzyStrings.matchOne("apple", CANDIDATES, FuzzyStrings::ratio, false, 80);
+        FuzzyStrings.setMatchListener(recorded::add);
+        FuzzyStrings.setMatchListener(null);
+        FuzzyStrings.matchOne("apple", CANDIDATES, FuzzyStrings::ratio, false, 80);
+        assertTrue(recorded.isEmpty());
+    }
+
+    @Test
+    void testMatchOne() {
+        FuzzyStrings.setMatchListener(recorded::add);
+        StringMatch match = FuzzyStrings.matchOne("apple", CANDIDATES, FuzzyStrings::ratio, false, 80);
+        assertEquals("apple", match.getText());
+        assertEquals(1, recorded.size());
+        MatchStats stats = recorded.get(0);
+        assertEquals("FuzzyStrings.matchOne", stats.getOperation());
+        assertEquals(CANDIDATES.size(), stats.getExaminedCount());
+        // the long candidate is rejected by its length, the others by the cutoff, which rises to 100
+        assertTrue(stats.getPrunedCount(PruneReason.LENGTH) >= 1);
+        assertEquals(0, stats.getPrunedCount(PruneReason.INDEX));
+        assertEquals(stats.getExaminedCount(), scored(stats) + stats.getPrunedCount(PruneReason.LENGTH)
+                + stats.getPrunedCount(PruneReason.CUTOFF));
+        assertEquals(1, stats.getScoreCount(100));
+        assertTrue(stats.getComparisonNanos() > 0);
+    }
+
+    @Test
+    void testMatchAndSort() {
+        FuzzyStrings.setMatchListener(recorded::add);
+        List<StringMatch> matches = FuzzyStrings.matchAndSort("apple", CANDIDATES, FuzzyStrings::complexRatio, true);
+        MatchStats stats = recorded.get(0);
+        assertEquals("FuzzyStrings.matchAndSort", stats.getOperation());
+        // without a cutoff, nothing is pruned and every score is recorded
+        assertEquals(CANDIDATES.size(), scored(stats));
+        for (StringMatch match : matches) {
+            assertTrue(stats.getScoreCount(match.getScore()) > 0);
+        }
+
+        recorded.clear();
+        int count = FuzzyIndex.of(CANDIDATES).matchAndSort("apple", FuzzyStrings::complexRatio, true, 90).size();
+        stats = recorded.get(0);
+        assertEquals("FuzzyIndex.matchAndSort", stats.getOperation());
+        assertEquals(count, scored(stats));
+        assertEquals(CANDIDATES.size() - count,
+                stats.getPrunedCount(PruneReason.LENGTH) + stats.getPrunedCount(PruneReason.CUTOFF));
+        assertTrue(stats.getNormalizationNanos() > 0);
+    }
+
+    @Test
+    void testIndexPruning() {
+        QGramIndex index = QGramIndex.of(CANDIDATES, false);
+        FuzzyStrings.setMatchListener(recorded::add);
+        index.matchAndSort("apple", 80);
+        MatchStats stats = recorded.get(0);
+        assertEquals("QGramIndex.matchAndSort", stats.getOperation());
+        assertTrue(stats.getPrunedCount(PruneReason.INDEX) > 0);
+        assertEquals(CANDIDATES.size(), stats.getExaminedCount() + stats.getPrunedCount(PruneReason.INDEX));
+    }
+
+    @Test
+    void testNestedOperations() {
+        FuzzyStrings.setMatchListener(recorded::add);
+        // a compare function that runs an operation of its own before rejecting the candidate
+        BoundedStringCompareFunction nested = (s1, s2, ignoreCase, scoreCutoff) -> {
+            FuzzyStrings.matchOne(s1, List.of(s2), FuzzyStrings::ratio, ignoreCase, scoreCutoff);
+            MatchStats.reject(PruneReason.LENGTH);
+            return 0;
+        };
+        FuzzyStrings.matchOne("apple", CANDIDATES, nested, false, 50);
+        assertEquals(CANDIDATES.size() + 1, recorded.size());
+        MatchStats outer = recorded.get(CANDIDATES.size());
+        assertEquals(CANDIDATES.size(), outer.getExaminedCount());
+        assertEquals(CANDIDATES.size(), outer.getPrunedCount(PruneReason.LENGTH));
+    }
+
+    @Test
+    void testFailedOperation() {
+        FuzzyStrings.setMatchListener(recorded::add);
+        BoundedStringCompareFunction failing = (s1, s2, ignoreCase, scoreCutoff) -> {
+            if (s2.equals("maple")) {
+                throw new IllegalStateException();
+            }
+            return FuzzyStrings.ratio(s1, s2, ignoreCase, scoreCutoff);
+        };
+        assertThrows(IllegalStateException.class,
+                () -> FuzzyStrings.matchAndSort("apple", CANDIDATES, failing, false, 0));
+        assertEquals(1, recorded.size());
+        assertEquals(CANDIDATES.indexOf("maple"), recorded.get(0).getExaminedCount());
+        List<String> invalid = new ArrayList<>(CANDIDATES);
+        invalid.add(" ");
+        PreparedString query = PreparedString.of("apple", false);
+        assertThrows(IllegalArgumentException.class,
+                () -> FuzzyStrings.matchOne(query, invalid, FuzzyStrings::ratio, 0));
+        assertEquals(2, recorded.size());
+        assertEquals(CANDIDATES.size(), recorded.get(1).getExaminedCount());
+        // the failed operations are not current anymore, so the next one starts from scratch
+        recorded.clear();
+        FuzzyStrings.matchOne("apple", CANDIDATES, FuzzyStrings::ratio, false, 80);
+        assertEquals(CANDIDATES.size(), recorded.get(0).getExaminedCount());
+    }
+
+    @Test
+    void testParallel() {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < 2 * ParallelMatch.SEQUENTIAL_THRESHOLD; i++) {
+            candidates.add(CANDIDATES.get(i % CANDIDATES.size()) + " " + i);
+        }
+        FuzzyStrings.setMatchListener(recorded::add);
+        for (List<String> list : List.of(candidates, CANDIDATES)) {
+            recorded.clear();
+            FuzzyStrings.matchAndSort("apple", list, FuzzyStrings::ratio, false);
+            FuzzyStrings.parallelMatchAndSort("apple", list, FuzzyStrings::ratio, false);
+            FuzzyStrings.parallelMatchOne("apple", list, FuzzyStrings::ratio, false);
+            assertEquals(3, recorded.size());
+            assertEquals("FuzzyStrings.matchAndSort", recorded.get(1).getOperation());
+            assertEquals("FuzzyStrings.matchOne", recorded.get(2).getOperation());
+            for (MatchStats stats : recorded) {
+                assertEquals(list.size(), stats.getExaminedCount());
+                for (int score = 0; score <= 100; score++) {
+                    assertEquals(recorded.get(0).getScoreCount(score), stats.getScoreCount(score));
+                }
+            }
+        }
+    }
+}
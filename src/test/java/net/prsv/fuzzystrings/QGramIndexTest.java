@@ -0,0 +1,87 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QGramIndexTest {
+
+    private static String random(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    // returns a copy of s with a few random edits
+    private static String mutate(Random random, String alphabet, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int i = random.nextInt(4); i >= 0 && sb.length() > 1; i--) {
+            int position = random.nextInt(sb.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.deleteCharAt(position);
+                    break;
+                case 1:
+                    sb.insert(position, alphabet.charAt(random.nextInt(alphabet.length())));
+                    break;
+                default:
+                    sb.setCharAt(position, alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testSameResultsAsFullScan() {
+        String alphabet = "abcdeABCDE İ";
+        Random random = new Random(3);
+        List<String> candidates = new ArrayList<>();
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String s = random(random, alphabet, 1 + random.nextInt(i % 10 == 0 ? 60 : 15));
+            if (s.isBlank()) {
+                s = "x";
+            }
+            candidates.add(s);
+            if (i % 50 == 0) {
+                queries.add(s);
+                queries.add(mutate(random, alphabet, s).strip() + "a");
+            }
+        }
+        for (boolean ignoreCase : new boolean[] {true, false}) {
+            QGramIndex index = QGramIndex.of(candidates, ignoreCase);
+            for (String query : queries) {
+                for (int cutoff : new int[] {1, 40, 65, 80, 95, 100}) {
+                    FuzzyIndexTest.assertSameMatches(
+                            FuzzyStrings.matchAndSort(query, candidates, FuzzyStrings::ratio, ignoreCase, cutoff),
+                            index.matchAndSort(query, cutoff));
+                    StringMatch expected = FuzzyStrings.matchOne(query, candidates, FuzzyStrings::ratio, ignoreCase,
+                            cutoff);
+                    StringMatch actual = index.matchOne(query, cutoff);
+                    assertEquals(expected.getText(), actual.getText());
+                    assertEquals(expected.getScore(), actual.getScore());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFilter() {
+        List<String> candidates = List.of("the quick brown fox", "the quick brown dog", "a lazy dog", "xyz",
+                "the quick brown fix");
+        QGramIndex index = QGramIndex.of(candidates, true);
+        assertArrayEquals(new int[] {0, 1, 4}, index.filter("The quick brown fox", 80));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, index.filter("The quick brown fox", 0));
+        assertEquals(5, index.size());
+        assertEquals("xyz", index.get(3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.filter(" ", 80));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> QGramIndex.of(List.of("a", ""), true));
+    }
+}
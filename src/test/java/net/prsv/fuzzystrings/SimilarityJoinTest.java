@@ -0,0 +1,78 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimilarityJoinTest {
+
+    private static List<String> randomRecords(Random random, int count) {
+        String[] words = {"acme", "corp", "inc", "ltd", "global", "north", "south", "trading", "Trading", "group",
+                "holdings", "co", "and", "sons", "partners", "intl", "industries", "groupe"};
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 1 + random.nextInt(5); j > 0; j--) {
+                sb.append(words[random.nextInt(words.length)]).append(j > 1 ? " " : "");
+            }
+            records.add(sb.toString());
+        }
+        return records;
+    }
+
+    private static Set<String> bruteForce(List<String> records, int threshold, boolean ignoreCase) {
+        Set<String> pairs = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                int score = FuzzyStrings.complexRatio(records.get(i), records.get(j), ignoreCase);
+                if (score >= threshold) {
+                    pairs.add(i + "," + j + "," + score);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    @Test
+    void testSameResultsAsBruteForce() {
+        Random random = new Random(3);
+        List<String> records = randomRecords(random, 600);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[] {-5, 0, 40, 60, 75, 90, 100, 101}) {
+                for (boolean ignoreCase : new boolean[] {true, false}) {
+                    Set<String> pairs = new HashSet<>();
+                    SimilarityJoin.join(records, threshold, ignoreCase,
+                            (first, second, score) -> assertTrue(pairs.add(first + "," + second + "," + score)),
+                            pool);
+                    assertEquals(bruteForce(records, threshold, ignoreCase), pairs,
+                            "threshold " + threshold + ", ignoreCase " + ignoreCase);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testClusters() {
+        List<String> records = Arrays.asList("Acme Corp", "globex", "ACME corp.", "Initech", "Acme Corp Inc",
+                "Globex", "initech llc", "umbrella");
+        List<int[]> clusters = SimilarityJoin.clusters(records, 70, true);
+        assertEquals(3, clusters.size());
+        assertArrayEquals(new int[] {0, 2, 4}, clusters.get(0));
+        assertArrayEquals(new int[] {1, 5}, clusters.get(1));
+        assertArrayEquals(new int[] {3, 6}, clusters.get(2));
+        assertTrue(SimilarityJoin.clusters(records, 101, true).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityJoin.clusters(Arrays.asList("a", " "), 50, false));
+    }
+}
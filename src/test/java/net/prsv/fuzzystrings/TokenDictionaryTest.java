@@ -0,0 +1,77 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenDictionaryTest {
+
+    private static Tokenizer tokenize(String s) {
+        return new Tokenizer().tokenize(s, false);
+    }
+
+    @Test
+    void testEncode() {
+        TokenDictionary dictionary = TokenDictionary.of(tokenize("the lazy dog the"));
+        assertEquals(3, dictionary.size());
+        assertArrayEquals(new int[] {1, 2, 0}, dictionary.encode(tokenize("lazy dog the")));
+        // unknown tokens get IDs no known token has, the same one for repeated tokens
+        assertArrayEquals(new int[] {3, 1, 4, 3}, dictionary.encode(tokenize("a lazy cat a")));
+        assertEquals(3, dictionary.size());
+        char[] cat = "cat".toCharArray();
+        assertEquals(-1, dictionary.lookup(cat, 0, cat.length));
+        Assertions.assertThrows(IllegalStateException.class, () -> dictionary.intern(cat, 0, cat.length));
+    }
+
+    @Test
+    void testManyUnknownTokens() {
+        TokenDictionary dictionary = TokenDictionary.of(tokenize("the"));
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            tokens.add(i % 7 == 0 ? "the" : "w" + (i * 31 % 1000));
+        }
+        int[] ids = dictionary.encode(tokenize(String.join(" ", tokens)));
+        // the first occurrence of each unknown token gets the next ID after the known ones
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("the", 0);
+        for (int i = 0; i < ids.length; i++) {
+            int id = expected.computeIfAbsent(tokens.get(i), token -> expected.size());
+            assertEquals(id, ids[i], "token " + i);
+        }
+    }
+
+    @Test
+    void testGrowing() {
+        TokenDictionary dictionary = new TokenDictionary();
+        assertArrayEquals(new int[] {0, 1, 0}, dictionary.encode(tokenize("a b a")));
+        assertArrayEquals(new int[] {2, 1}, dictionary.encode(tokenize("c b")));
+        assertEquals(3, dictionary.size());
+        // enough tokens to grow the hash table a few times
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 3, dictionary.encode(tokenize("token" + i))[0]);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 3, dictionary.encode(tokenize("token" + i))[0]);
+        }
+    }
+
+    @Test
+    void testSharedDictionary() {
+        PreparedString query = PreparedString.of("The lazy dog, the end", true);
+        PreparedString candidate = PreparedString.ofCandidate("lazy cats and dogs, THE END", query);
+        assertSame(query.dictionary(), candidate.dictionary());
+        assertArrayEquals(new int[] {0, 1, 2, 0, 3}, query.tokenIds());
+        assertArrayEquals(new int[] {0, 1, 2, 3}, query.tokenSet());
+        assertArrayEquals(new int[] {1, 4, 5, 6, 0, 3}, candidate.tokenIds());
+        assertArrayEquals(new int[] {0, 1, 3, 4, 5, 6}, candidate.tokenSet());
+        PreparedString other = PreparedString.of("lazy cats and dogs, THE END", true);
+        assertEquals(FuzzyStrings.ratioTokenSet(query, other, 0), FuzzyStrings.ratioTokenSet(query, candidate, 0));
+        assertEquals(FuzzyStrings.ratioToken(query, other, 0), FuzzyStrings.ratioToken(query, candidate, 0));
+    }
+}
@@ -0,0 +1,54 @@
+package net.prsv.fuzzystrings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizerTest {
+
+    private static final Pattern nonWord = Pattern.compile("[\\W]+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    // the regex-based tokenization the tokenizer replaces
+    private static String[] referenceTokens(String s, boolean toLowerCase) {
+        String result = nonWord.matcher(s).replaceAll(" ").replaceAll("[\\s]+", " ").strip();
+        if (toLowerCase) {
+            result = result.toLowerCase(Locale.ROOT);
+        }
+        return result.split("\\s");
+    }
+
+    private static void assertSameTokens(String s) {
+        for (boolean toLowerCase : new boolean[] {true, false}) {
+            assertArrayEquals(referenceTokens(s, toLowerCase), FuzzyStrings.tokenize(s, toLowerCase), s);
+        }
+    }
+
+    @Test
+    void testTokenize() {
+        assertArrayEquals(new String[] {"a", "quick", "brown", "fox"},
+                FuzzyStrings.tokenize("  A quick, brown...fox!", true));
+        assertArrayEquals(new String[] {""}, FuzzyStrings.tokenize(" -- ", false));
+        assertSameTokens("ΣΊΣΥΦΟΣ, ΣΟΦΟΣ! ΟΔΟΣ-Σ");
+        assertSameTokens("İstanbul İİ xİ");
+        assertSameTokens("snake_case été ٣٤ zero‌width 𐐀𝐀 \uD800x");
+    }
+
+    @Test
+    void testRandom() {
+        String alphabet = "aZ9_ .,-!\t\nΣσςΑΩİIıí̇⃝ः٣‌‍ßÉ"
+                + "中ʰⅠ𐀀𐐀𝐀＿ ";
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameTokens(sb.toString());
+        }
+    }
+}